@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2018 kince
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kince.saundprogressbar;
+
+import android.os.SystemClock;
+import android.view.View;
+
+/**
+ * Applies a {@link SaundAccessibilityPolicy} to the progress events of a
+ * widget. The widget hands every progress event to the throttle instead of
+ * sending it, the throttle sends it right away, coalesces it into a single
+ * delayed event or drops it. Nothing happens on the draw path. All methods
+ * must be called on the UI thread.
+ *
+ * @author kince
+ */
+final class AccessibilityThrottle implements Runnable {
+
+    /**
+     * The widget whose events are throttled.
+     */
+    interface Host {
+        /**
+         * Returns the current progress in percent.
+         */
+        int getPercent();
+
+        /**
+         * Sends the progress event, bypassing the throttle.
+         */
+        void sendProgressEvent();
+    }
+
+    private final View mView;
+    private final Host mHost;
+    private SaundAccessibilityPolicy mPolicy;
+
+    private int mLastPercent = -1;
+    private long mLastTime;
+    private boolean mScheduled;
+
+    AccessibilityThrottle(View view, Host host, SaundAccessibilityPolicy policy) {
+        mView = view;
+        mHost = host;
+        mPolicy = policy;
+    }
+
+    void setPolicy(SaundAccessibilityPolicy policy) {
+        mPolicy = policy;
+        cancel();
+    }
+
+    SaundAccessibilityPolicy getPolicy() {
+        return mPolicy;
+    }
+
+    /**
+     * Called for every progress event the widget would have sent.
+     */
+    void onProgressEvent() {
+        final int percent = mHost.getPercent();
+        if (!mPolicy.isWorthReporting(mLastPercent, percent)) {
+            return;
+        }
+
+        final long now = SystemClock.uptimeMillis();
+        final long due = mLastTime + mPolicy.getMinInterval();
+        if (mLastPercent < 0 || now >= due) {
+            send(percent, now);
+        } else if (!mScheduled) {
+            // the delayed event reports whatever the progress is by then
+            mScheduled = true;
+            mView.postDelayed(this, due - now);
+        }
+    }
+
+    @Override
+    public void run() {
+        mScheduled = false;
+
+        final int percent = mHost.getPercent();
+        if (mPolicy.isWorthReporting(mLastPercent, percent)) {
+            send(percent, SystemClock.uptimeMillis());
+        }
+    }
+
+    /**
+     * Drops a pending delayed event.
+     */
+    void cancel() {
+        if (mScheduled) {
+            mScheduled = false;
+            mView.removeCallbacks(this);
+        }
+    }
+
+    private void send(int percent, long now) {
+        mLastPercent = percent;
+        mLastTime = now;
+        mHost.sendProgressEvent();
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2018 kince
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kince.saundprogressbar;
+
+import android.os.SystemClock;
+import android.support.v4.view.ViewCompat;
+import android.widget.ProgressBar;
+
+/**
+ * Moves a widget along a {@link ProgressClock}. It only wakes up while the
+ * widget can be seen, and only hands the progress to the widget when the
+ * extrapolated progress moves the bar by at least a pixel, sleeping until the
+ * next pixel is due otherwise. All methods must be called on the UI thread.
+ *
+ * @author kince
+ */
+final class ClockDriver implements Runnable {
+
+    /**
+     * The widget that follows the clock.
+     */
+    interface Host {
+        /**
+         * Applies progress read from the clock without unbinding it, the same
+         * way an explicit update is applied and drawn.
+         */
+        void setClockProgress(int progress);
+    }
+
+    private final ProgressBar mView;
+    private final RenderGate mRenderGate;
+    private final Host mHost;
+    private final ProgressClock mClock = new ProgressClock();
+
+    // the pixel the bar was last moved to, -1 forces the next frame to draw
+    private int mPixel = -1;
+
+    ClockDriver(ProgressBar view, RenderGate renderGate, Host host) {
+        mView = view;
+        mRenderGate = renderGate;
+        mHost = host;
+    }
+
+    void set(long position, float rate, long timestamp) {
+        mClock.set(position, rate, timestamp);
+        mPixel = -1;
+        schedule();
+    }
+
+    /**
+     * Unbinds the clock and applies the progress it had reached.
+     */
+    void clear() {
+        if (!mClock.isBound()) {
+            return;
+        }
+
+        final int progress = progress();
+        cancel();
+        mHost.setClockProgress(progress);
+    }
+
+    /**
+     * Unbinds the clock and leaves the progress alone, for when the progress
+     * is replaced anyway.
+     */
+    void cancel() {
+        if (mClock.isBound()) {
+            mClock.clear();
+            mView.removeCallbacks(this);
+        }
+    }
+
+    boolean isBound() {
+        return mClock.isBound();
+    }
+
+    /**
+     * Returns the extrapolated progress right now.
+     */
+    int progress() {
+        return mClock.progressAt(SystemClock.uptimeMillis(), mView.getMax());
+    }
+
+    /**
+     * Catches up with the clock once the widget can be seen again.
+     */
+    void resume() {
+        if (mClock.isBound()) {
+            mPixel = -1;
+            schedule();
+        }
+    }
+
+    /**
+     * Stops waking up while the widget can't be seen.
+     */
+    void pause() {
+        mView.removeCallbacks(this);
+    }
+
+    private void schedule() {
+        mView.removeCallbacks(this);
+        if (mClock.isBound() && mRenderGate.isRendering()) {
+            ViewCompat.postOnAnimation(mView, this);
+        }
+    }
+
+    @Override
+    public void run() {
+        if (!mClock.isBound() || !mRenderGate.isRendering()) {
+            return;
+        }
+
+        final int max = mView.getMax();
+        final int width = mView.getWidth() - mView.getPaddingLeft() - mView.getPaddingRight();
+        final int progress = mClock.progressAt(SystemClock.uptimeMillis(), max);
+        final int pixel = ProgressClock.pixelOf(progress, max, width);
+
+        if (pixel != mPixel) {
+            mPixel = pixel;
+            mHost.setClockProgress(progress);
+        }
+
+        if (mClock.isRunning() && !mClock.isFinished(progress, max)) {
+            ViewCompat.postOnAnimationDelayed(mView, this,
+                    mClock.delayToNextPixel(max, width));
+        }
+    }
+}
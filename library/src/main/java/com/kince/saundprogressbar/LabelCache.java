@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2018 kince
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kince.saundprogressbar;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A small bounded LRU of indicator labels keyed by progress value. Formatting
+ * a label (especially a locale aware one) is far more expensive than drawing
+ * it, yet onDraw asks for the label on every frame even when the progress has
+ * not changed. The cache keeps the last few labels so a redraw is a lookup.
+ * <p>
+ * When an {@link Executor} is supplied, labels that are not cached yet are
+ * formatted on that executor and swapped in on the next frame. Until then the
+ * last label that was shown keeps being drawn. All state is confined to the UI
+ * thread, only {@link SaundProgressBar.Formatter#getText(int)} runs on the
+ * executor. Results are published through the main looper rather than the
+ * view, whose post() drops runnables from other threads while it is detached
+ * on older platforms.
+ *
+ * @author kince
+ */
+final class LabelCache {
+
+    static final int DEFAULT_CAPACITY = 16;
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private final View mView;
+
+    private int[] mKeys;
+    private String[] mValues;
+    private long[] mStamps;
+    private int mSize;
+    private long mClock;
+
+    private SaundProgressBar.Formatter mFormatter;
+    private Executor mExecutor;
+    private int mMax = -1;
+
+    private String mLastLabel = "";
+    private int mGeneration;
+    private boolean mInFlight;
+
+    LabelCache(View view) {
+        mView = view;
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Sets the formatter used to produce labels. A null formatter falls back to
+     * the default X% label. A non null executor makes formatting asynchronous.
+     */
+    void setFormatter(SaundProgressBar.Formatter formatter, Executor executor) {
+        mFormatter = formatter;
+        mExecutor = executor;
+        clear();
+    }
+
+    SaundProgressBar.Formatter getFormatter() {
+        return mFormatter;
+    }
+
+    /**
+     * Grows the cache so that it holds at least the given number of labels.
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity > mKeys.length) {
+            allocate(capacity);
+            clear();
+        }
+    }
+
+    /**
+     * Drops every cached label. Labels that are being formatted in the
+     * background are discarded once they complete.
+     */
+    void clear() {
+        mSize = 0;
+        mGeneration++;
+        mInFlight = false;
+    }
+
+    /**
+     * Returns the label for the given progress, formatting it only if it is
+     * not cached yet.
+     */
+    String get(int progress, int max) {
+        // the default label and most formatters depend on the max so a change
+        // invalidates everything we have cached so far
+        if (max != mMax) {
+            clear();
+            mMax = max;
+        }
+
+        for (int i = 0; i < mSize; i++) {
+            if (mKeys[i] == progress) {
+                mStamps[i] = ++mClock;
+                mLastLabel = mValues[i];
+                return mLastLabel;
+            }
+        }
+
+        if (mFormatter == null) {
+            return put(progress, defaultLabel(progress, max));
+        }
+
+        if (mExecutor == null) {
+            return put(progress, mFormatter.getText(progress));
+        }
+
+        // keep showing the previous label until the new one is ready
+        if (!mInFlight) {
+            mInFlight = true;
+            FormatTask task = new FormatTask(mFormatter, progress, max, mGeneration);
+            try {
+                mExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                mInFlight = false;
+                return put(progress, mFormatter.getText(progress));
+            }
+        }
+        return mLastLabel;
+    }
+
+    /**
+     * Returns the default X% label.
+     */
+    static String defaultLabel(int progress, int max) {
+        float scale = max > 0 ? (float) progress / (float) max : 0;
+        return Math.round(scale * 100.0f) + "%";
+    }
+
+    private String put(int progress, String label) {
+        int index;
+        if (mSize < mKeys.length) {
+            index = mSize++;
+        } else {
+            // evict the least recently used label
+            index = 0;
+            for (int i = 1; i < mSize; i++) {
+                if (mStamps[i] < mStamps[index]) {
+                    index = i;
+                }
+            }
+        }
+
+        mKeys[index] = progress;
+        mValues[index] = label;
+        mStamps[index] = ++mClock;
+        mLastLabel = label;
+        return label;
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new int[capacity];
+        mValues = new String[capacity];
+        mStamps = new long[capacity];
+    }
+
+    /**
+     * Formats a label on the executor and then hops back to the UI thread to
+     * publish it. A formatter that throws gets the default label, the task
+     * must always come back or no other label would ever be formatted.
+     */
+    private final class FormatTask implements Runnable {
+
+        private final SaundProgressBar.Formatter mTaskFormatter;
+        private final int mProgress;
+        private final int mTaskMax;
+        private final int mTaskGeneration;
+        private String mText;
+
+        FormatTask(SaundProgressBar.Formatter formatter, int progress, int max,
+                   int generation) {
+            mTaskFormatter = formatter;
+            mProgress = progress;
+            mTaskMax = max;
+            mTaskGeneration = generation;
+        }
+
+        @Override
+        public void run() {
+            if (mText == null) {
+                String text;
+                try {
+                    text = mTaskFormatter.getText(mProgress);
+                } catch (RuntimeException e) {
+                    // don't take the executor's worker down with us
+                    text = defaultLabel(mProgress, mTaskMax);
+                }
+                mText = text != null ? text : "";
+                sMainHandler.post(this);
+                return;
+            }
+
+            // anything formatted for a previous formatter or max is stale
+            if (mTaskGeneration != mGeneration) {
+                return;
+            }
+
+            // the view may be detached by now, the label is still worth
+            // keeping for when it comes back
+            mInFlight = false;
+            put(mProgress, mText);
+            mView.invalidate();
+        }
+    }
+}
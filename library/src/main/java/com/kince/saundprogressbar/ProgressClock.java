@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2018 kince
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kince.saundprogressbar;
+
+/**
+ * A time source a progress bar can follow on its own, e.g. the playback
+ * position of a media player. It is described by a position in progress
+ * units, the rate at which the position advances in progress units per
+ * millisecond and the {@link android.os.SystemClock#uptimeMillis()} at which
+ * the position was sampled. Between two samples the progress is extrapolated.
+ *
+ * @author kince
+ */
+final class ProgressClock {
+
+    // never sleep longer than this, so a bar which moves very slowly still
+    // notices that it was resized
+    private static final long MAX_DELAY = 1000;
+
+    private boolean mBound;
+    private long mPosition;
+    private float mRate;
+    private long mTimestamp;
+
+    void set(long position, float rate, long timestamp) {
+        mBound = true;
+        mPosition = position;
+        mRate = rate;
+        mTimestamp = timestamp;
+    }
+
+    void clear() {
+        mBound = false;
+    }
+
+    boolean isBound() {
+        return mBound;
+    }
+
+    /**
+     * Returns true if the progress moves by itself.
+     */
+    boolean isRunning() {
+        return mBound && mRate != 0;
+    }
+
+    /**
+     * Returns the extrapolated progress at the given time, clamped to
+     * [0, max].
+     */
+    int progressAt(long now, int max) {
+        final long progress = mPosition + (long) (mRate * (now - mTimestamp));
+        return (int) Math.max(0, Math.min(progress, max));
+    }
+
+    /**
+     * Returns true if the progress can't move any further in its direction.
+     */
+    boolean isFinished(int progress, int max) {
+        return mRate > 0 ? progress >= max : progress <= 0;
+    }
+
+    /**
+     * Returns how long it takes the progress to move by one pixel on a track
+     * of the given width, which is how long the bar can sleep.
+     */
+    long delayToNextPixel(int max, int width) {
+        if (max <= 0 || width <= 0) {
+            return MAX_DELAY;
+        }
+
+        final float unitsPerPixel = max / (float) width;
+        return Math.max(0, Math.min((long) (unitsPerPixel / Math.abs(mRate)), MAX_DELAY));
+    }
+
+    /**
+     * Returns the pixel of a track of the given width the progress ends on.
+     */
+    static int pixelOf(int progress, int max, int width) {
+        return max > 0 ? (int) (width * (float) progress / max + 0.5f) : 0;
+    }
+}
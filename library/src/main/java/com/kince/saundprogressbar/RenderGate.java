@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2018 kince
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kince.saundprogressbar;
+
+import android.view.View;
+
+/**
+ * Tracks whether a widget can actually be seen, i.e. it is attached, its
+ * window is visible and it and all of its ancestors are visible. While it
+ * can't be seen progress updates are still applied to the ProgressBar, so
+ * every ProgressBar method keeps seeing the latest progress, but nothing is
+ * invalidated or formatted. The widget is redrawn once when it becomes
+ * visible again.
+ * <p>
+ * The widget forwards its attach and visibility callbacks to the gate. All
+ * methods must be called on the UI thread.
+ *
+ * @author kince
+ */
+final class RenderGate {
+
+    private final View mView;
+
+    private boolean mAttached;
+    private boolean mRendering;
+
+    private int mSuppressedUpdates;
+
+    RenderGate(View view) {
+        mView = view;
+    }
+
+    void setAttached(boolean attached) {
+        mAttached = attached;
+    }
+
+    /**
+     * Re-evaluates the visibility of the widget.
+     *
+     * @return true if the widget just became visible
+     */
+    boolean update() {
+        final boolean wasRendering = mRendering;
+        // isShown() aggregates the visibility of every ancestor
+        mRendering = mAttached && mView.getWindowVisibility() == View.VISIBLE
+                && mView.isShown();
+        return mRendering && !wasRendering;
+    }
+
+    /**
+     * Returns true if the widget is visible and should draw.
+     */
+    boolean isRendering() {
+        return mRendering;
+    }
+
+    /**
+     * Counts a progress update that doesn't need to be drawn because the
+     * widget is hidden.
+     *
+     * @return true if the update should not invalidate the widget
+     */
+    boolean suppress() {
+        if (mRendering) {
+            return false;
+        }
+
+        mSuppressedUpdates++;
+        return true;
+    }
+
+    int getSuppressedUpdates() {
+        return mSuppressedUpdates;
+    }
+}
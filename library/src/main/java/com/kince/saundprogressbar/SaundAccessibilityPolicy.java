@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2018 kince
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kince.saundprogressbar;
+
+/**
+ * Decides how often a progress bar tells accessibility services about its
+ * progress. Without a policy every progress update of a fast moving bar may
+ * produce an accessibility event, which costs frame time and floods the user
+ * with announcements.
+ * <p>
+ * Events are sent at most once per interval and only when the progress moved
+ * by at least the given number of percent, or, if milestones are set, only
+ * when the progress crosses a milestone. Events that arrive too early are
+ * coalesced into one event which reports the latest progress.
+ *
+ * @author kince
+ */
+public final class SaundAccessibilityPolicy {
+
+    /**
+     * At most two events per second, for every change of at least 1%.
+     */
+    public static final SaundAccessibilityPolicy DEFAULT =
+            new SaundAccessibilityPolicy(500, 1, 0);
+
+    private final long mMinInterval;
+    private final int mMinPercentDelta;
+    private final int mMilestone;
+
+    /**
+     * @param minInterval     the minimum time between two events in
+     *                        milliseconds
+     * @param minPercentDelta the minimum change in percent that is reported
+     * @param milestone       if larger than 0 only changes that cross a
+     *                        multiple of this many percent (or reach 100%)
+     *                        are reported and minPercentDelta is ignored
+     */
+    public SaundAccessibilityPolicy(long minInterval, int minPercentDelta, int milestone) {
+        mMinInterval = Math.max(0, minInterval);
+        mMinPercentDelta = Math.max(1, minPercentDelta);
+        mMilestone = Math.max(0, milestone);
+    }
+
+    public long getMinInterval() {
+        return mMinInterval;
+    }
+
+    public int getMinPercentDelta() {
+        return mMinPercentDelta;
+    }
+
+    public int getMilestone() {
+        return mMilestone;
+    }
+
+    /**
+     * Returns true if a change from the last reported percentage, or -1 if
+     * nothing was reported yet, to the given one is worth an event.
+     */
+    boolean isWorthReporting(int lastPercent, int percent) {
+        if (lastPercent < 0) {
+            return true;
+        }
+        if (percent == lastPercent) {
+            return false;
+        }
+        if (mMilestone > 0) {
+            return percent / mMilestone != lastPercent / mMilestone || percent == 100;
+        }
+        return Math.abs(percent - lastPercent) >= mMinPercentDelta;
+    }
+}
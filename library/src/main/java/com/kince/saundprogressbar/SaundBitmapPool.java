@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2018 kince
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kince.saundprogressbar;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+
+/**
+ * A small bounded pool of bitmaps which can be shared by several
+ * {@link SaundProgressRenderer}s, e.g. one per notification, so frequent
+ * updates reuse bitmaps of the same size instead of allocating new ones.
+ *
+ * @author kince
+ */
+public class SaundBitmapPool {
+
+    private final int mMaxSize;
+    private final ArrayList<Bitmap> mPool;
+
+    public SaundBitmapPool(int maxSize) {
+        mMaxSize = maxSize;
+        mPool = new ArrayList<>(maxSize);
+    }
+
+    /**
+     * Returns a cleared bitmap of the given size and config, reusing a pooled
+     * one if possible.
+     *
+     * @param width
+     * @param height
+     * @param config
+     */
+    public Bitmap acquire(int width, int height, Bitmap.Config config) {
+        synchronized (mPool) {
+            for (int i = mPool.size() - 1; i >= 0; i--) {
+                Bitmap bitmap = mPool.get(i);
+                if (bitmap.getWidth() == width && bitmap.getHeight() == height
+                        && bitmap.getConfig() == config) {
+                    mPool.remove(i);
+                    bitmap.eraseColor(0);
+                    return bitmap;
+                }
+            }
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Returns a bitmap to the pool. The caller must not use it afterwards.
+     *
+     * @param bitmap
+     */
+    public void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return;
+        }
+
+        synchronized (mPool) {
+            if (mPool.size() < mMaxSize && !mPool.contains(bitmap)) {
+                mPool.add(bitmap);
+            }
+        }
+    }
+
+    /**
+     * Drops every pooled bitmap.
+     */
+    public void clear() {
+        synchronized (mPool) {
+            mPool.clear();
+        }
+    }
+}
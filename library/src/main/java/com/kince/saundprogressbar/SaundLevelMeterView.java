@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2018 kince
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kince.saundprogressbar;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.LayerDrawable;
+import android.os.SystemClock;
+import android.support.v4.content.ContextCompat;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * A multi band level meter drawn with the Saund look. Instead of one
+ * SaundProgressBar per band, which costs a view, an invalidation and a label
+ * per band on every update, all bands are passed in at once with
+ * {@link #setLevels(float[])} and drawn in a single pass with the track,
+ * progress and pattern layers of the meter drawable.
+ * <p>
+ * Peak hold and decay are computed in place on primitive arrays while the
+ * levels are set, so an update doesn't allocate unless the number of bands
+ * changes. The peaks decay as levels keep coming in, a meter that is no
+ * longer fed keeps showing its last state.
+ *
+ * @author kince
+ */
+public class SaundLevelMeterView extends View {
+
+    public static final int HORIZONTAL = 0;
+    public static final int VERTICAL = 1;
+
+    private static final int DEFAULT_PEAK_HOLD_TIME = 500;
+    private static final float DEFAULT_PEAK_DECAY = 1.0f;
+
+    private Drawable mTrack;
+    private Drawable mProgress;
+    private Drawable mPattern;
+    private Paint mPeakPaint;
+
+    private int mOrientation;
+    private int mBandSpacing;
+    private int mPeakSize;
+    private int mPeakHoldTime;
+    private float mPeakDecay;
+
+    private float[] mLevels = new float[0];
+    private float[] mPeaks = new float[0];
+    private long[] mPeakTimes = new long[0];
+    private long mLastUpdate;
+
+    private RenderGate mRenderGate;
+
+    public SaundLevelMeterView(Context context) {
+        this(context, null);
+    }
+
+    public SaundLevelMeterView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public SaundLevelMeterView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+
+        mRenderGate = new RenderGate(this);
+        mPeakPaint = new Paint();
+
+        // get the styleable attributes as defined in the xml
+        TypedArray a = context.obtainStyledAttributes(attrs,
+                R.styleable.SaundLevelMeterView, defStyle, 0);
+
+        Drawable drawable = a.getDrawable(R.styleable.SaundLevelMeterView_meterDrawable);
+        mOrientation = a.getInt(R.styleable.SaundLevelMeterView_meterOrientation,
+                VERTICAL);
+        mBandSpacing = a.getDimensionPixelSize(
+                R.styleable.SaundLevelMeterView_bandSpacing,
+                getResources().getDimensionPixelSize(R.dimen.saund_meter_band_spacing));
+        mPeakPaint.setColor(a.getColor(R.styleable.SaundLevelMeterView_peakColor,
+                Color.WHITE));
+        mPeakSize = a.getDimensionPixelSize(R.styleable.SaundLevelMeterView_peakSize,
+                getResources().getDimensionPixelSize(R.dimen.saund_meter_peak_size));
+        mPeakHoldTime = a.getInt(R.styleable.SaundLevelMeterView_peakHoldTime,
+                DEFAULT_PEAK_HOLD_TIME);
+        mPeakDecay = a.getFloat(R.styleable.SaundLevelMeterView_peakDecay,
+                DEFAULT_PEAK_DECAY);
+
+        a.recycle();
+
+        if (drawable == null) {
+            drawable = ContextCompat.getDrawable(getContext(), R.drawable.progressbar);
+        }
+        setMeterDrawable(drawable);
+    }
+
+    /**
+     * Sets the drawable the bands are drawn with. A LayerDrawable provides the
+     * track (android.R.id.background), the progress (R.id.progress) and the
+     * pattern overlay (R.id.pattern), any other drawable is used as the
+     * progress.
+     *
+     * @param drawable
+     */
+    public void setMeterDrawable(Drawable drawable) {
+        if (drawable instanceof LayerDrawable) {
+            LayerDrawable d = (LayerDrawable) drawable;
+            mTrack = d.findDrawableByLayerId(android.R.id.background);
+            mProgress = d.findDrawableByLayerId(R.id.progress);
+            mPattern = d.findDrawableByLayerId(R.id.pattern);
+        } else {
+            mTrack = null;
+            mProgress = drawable;
+            mPattern = null;
+        }
+        invalidate();
+    }
+
+    /**
+     * Sets whether the bands grow from left to right and are stacked on top
+     * of each other ({@link #HORIZONTAL}) or grow from the bottom up and sit
+     * next to each other ({@link #VERTICAL}).
+     *
+     * @param orientation
+     */
+    public void setOrientation(int orientation) {
+        mOrientation = orientation;
+        invalidate();
+    }
+
+    /**
+     * Set the gap between two bands.
+     *
+     * @param spacing
+     */
+    public void setBandSpacing(int spacing) {
+        mBandSpacing = spacing;
+        invalidate();
+    }
+
+    /**
+     * Set the color of the peak markers.
+     *
+     * @param color
+     */
+    public void setPeakColor(int color) {
+        mPeakPaint.setColor(color);
+        invalidate();
+    }
+
+    /**
+     * Sets how long a peak is held before it starts to decay and how fast it
+     * decays, in full scales per second.
+     *
+     * @param holdTime
+     * @param decay
+     */
+    public void setPeakBehavior(int holdTime, float decay) {
+        mPeakHoldTime = holdTime;
+        mPeakDecay = decay;
+    }
+
+    /**
+     * Sets the level of every band in [0,1]. The number of bands follows the
+     * length of the array. The array is copied, so the caller can reuse it
+     * for the next update.
+     *
+     * @param levels
+     */
+    public void setLevels(float[] levels) {
+        final int count = levels.length;
+        if (count != mLevels.length) {
+            mLevels = new float[count];
+            mPeaks = new float[count];
+            mPeakTimes = new long[count];
+        }
+
+        final long now = SystemClock.uptimeMillis();
+        final float elapsed = mLastUpdate > 0 ? (now - mLastUpdate) / 1000.0f : 0;
+        mLastUpdate = now;
+
+        for (int i = 0; i < count; i++) {
+            final float level = Math.max(0, Math.min(levels[i], 1));
+            float peak = mPeaks[i];
+
+            if (now - mPeakTimes[i] > mPeakHoldTime) {
+                peak -= mPeakDecay * elapsed;
+            }
+            if (level >= peak) {
+                peak = level;
+                mPeakTimes[i] = now;
+            }
+
+            mLevels[i] = level;
+            mPeaks[i] = peak;
+        }
+
+        // a hidden meter keeps its state up to date but doesn't draw
+        if (mRenderGate.isRendering()) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Returns the number of bands.
+     */
+    public int getBandCount() {
+        return mLevels.length;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        final int count = mLevels.length;
+        if (count == 0) {
+            return;
+        }
+
+        final int left = getPaddingLeft();
+        final int top = getPaddingTop();
+        final int width = getWidth() - left - getPaddingRight();
+        final int height = getHeight() - top - getPaddingBottom();
+        final boolean vertical = mOrientation == VERTICAL;
+
+        // the bands share the space across the orientation
+        final float thickness = ((vertical ? width : height)
+                - mBandSpacing * (count - 1)) / (float) count;
+        if (thickness <= 0) {
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            final int start = (int) (i * (thickness + mBandSpacing) + 0.5f);
+            final int end = (int) (i * (thickness + mBandSpacing) + thickness + 0.5f);
+
+            if (vertical) {
+                final int bottom = top + height;
+                final int level = bottom - (int) (height * mLevels[i] + 0.5f);
+                final int peak = bottom - (int) (height * mPeaks[i] + 0.5f);
+
+                drawLayer(canvas, mTrack, left + start, top, left + end, bottom);
+                drawBand(canvas, left + start, level, left + end, bottom);
+                if (mPeaks[i] > 0) {
+                    final int peakTop = Math.max(top, Math.min(peak, bottom - mPeakSize));
+                    canvas.drawRect(left + start, peakTop, left + end,
+                            peakTop + mPeakSize, mPeakPaint);
+                }
+            } else {
+                final int level = left + (int) (width * mLevels[i] + 0.5f);
+                final int peak = left + (int) (width * mPeaks[i] + 0.5f);
+
+                drawLayer(canvas, mTrack, left, top + start, left + width, top + end);
+                drawBand(canvas, left, top + start, level, top + end);
+                if (mPeaks[i] > 0) {
+                    final int peakLeft = Math.max(left, Math.min(peak - mPeakSize,
+                            left + width - mPeakSize));
+                    canvas.drawRect(peakLeft, top + start, peakLeft + mPeakSize,
+                            top + end, mPeakPaint);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the progress layer of a band and the pattern overlay inside it.
+     */
+    private void drawBand(Canvas canvas, int left, int top, int right, int bottom) {
+        if (right <= left || bottom <= top) {
+            return;
+        }
+
+        drawLayer(canvas, mProgress, left, top, right, bottom);
+        if (mProgress != null) {
+            // we want our pattern overlay to sit inside the bounds of our
+            // progress bar
+            drawLayer(canvas, mPattern,
+                    (left + 1 > right) ? left : left + 1, top,
+                    (right > 0) ? right - 1 : right, bottom);
+        } else {
+            drawLayer(canvas, mPattern, left, top, right, bottom);
+        }
+    }
+
+    private static void drawLayer(Canvas canvas, Drawable layer, int left, int top,
+                                  int right, int bottom) {
+        if (layer == null) {
+            return;
+        }
+
+        layer.setBounds(left, top, right, bottom);
+        layer.draw(canvas);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mRenderGate.setAttached(true);
+        onRenderStateChanged();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        mRenderGate.setAttached(false);
+        onRenderStateChanged();
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        onRenderStateChanged();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        onRenderStateChanged();
+    }
+
+    private void onRenderStateChanged() {
+        // called by the View constructor before we are initialised
+        if (mRenderGate == null) {
+            return;
+        }
+
+        // levels set while we were hidden are drawn in the next frame
+        if (mRenderGate.update()) {
+            invalidate();
+        }
+    }
+}
@@ -16,19 +16,24 @@
 
 package com.kince.saundprogressbar;
 
+import android.annotation.TargetApi;
 import android.content.Context;
-import android.content.res.TypedArray;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.Paint.Align;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.LayerDrawable;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.v4.view.ViewCompat;
 import android.text.TextPaint;
 import android.util.AttributeSet;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
 import android.widget.ProgressBar;
 
+import java.util.concurrent.Executor;
+
 /**
  * An enhanced version of the ProgressBar which provides greater control over
  * how the progress bar is drawn and displayed. The motivation is to allow us to
@@ -36,15 +41,35 @@ import android.widget.ProgressBar;
  * a rounded cap at the end of the progress bar and optionally show an overlay.
  * We can also present a progress indicator to show the percentage completed or
  * a more customized value by implementing the Formatter interface.
+ * <p>
+ * While it is detached, hidden or in a hidden window progress updates are
+ * applied without being drawn, the latest progress is drawn in a single frame
+ * once it can be seen again.
+ * <p>
+ * In the saund indeterminate mode a segment of the progress bar, together with
+ * its pattern overlay and the indicator, sweeps across the track instead of
+ * the platform's indeterminate animation.
  *
  * @author kince
  */
 public class SaundProgressBar extends ProgressBar {
 
+    private static final int INDETERMINATE_PERIOD = 1500;
+    private static final float INDETERMINATE_SEGMENT = 0.3f;
+
     private Drawable mIndicator;
     private int mOffset = 5;
     private TextPaint mTextPaint;
-    private Formatter mFormatter;
+    private boolean mTextPaintShared;
+    private LabelCache mLabelCache;
+
+    private boolean mSaundIndeterminate;
+    private long mFrameInterval;
+    private RenderGate mRenderGate;
+    private AccessibilityThrottle mAccessibilityThrottle;
+    private ClockDriver mClockDriver;
+    private boolean mIndeterminateRunning;
+    private Runnable mIndeterminateFrame;
 
     public SaundProgressBar(Context context) {
         this(context, null);
@@ -57,54 +82,82 @@ public class SaundProgressBar extends ProgressBar {
     public SaundProgressBar(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
 
-        // create a default progress bar indicator text paint used for drawing
-        // the
-        // text on to the canvas
-        mTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
-        mTextPaint.density = getResources().getDisplayMetrics().density;
-        mTextPaint.setColor(Color.WHITE);
-        mTextPaint.setTextAlign(Align.CENTER);
-        mTextPaint.setTextSize(10);
-        mTextPaint.setFakeBoldText(true);
-
-        // get the styleable attributes as defined in the xml
-        TypedArray a = context.obtainStyledAttributes(attrs,
-                R.styleable.SaundProgressBar, defStyle, 0);
-
-        if (a != null) {
-            mTextPaint.setTextSize(a.getDimension(
-                    R.styleable.SaundProgressBar_textSize, 10));
-            mTextPaint.setColor(a.getColor(
-                    R.styleable.SaundProgressBar_textColor, Color.WHITE));
-
-            int alignIndex = (a.getInt(R.styleable.SaundProgressBar_textAlign,
-                    1));
-            if (alignIndex == 0) {
-                mTextPaint.setTextAlign(Align.LEFT);
-            } else if (alignIndex == 1) {
-                mTextPaint.setTextAlign(Align.CENTER);
-            } else if (alignIndex == 2) {
-                mTextPaint.setTextAlign(Align.RIGHT);
+        mLabelCache = new LabelCache(this);
+        mRenderGate = new RenderGate(this);
+        mAccessibilityThrottle = new AccessibilityThrottle(this,
+                new AccessibilityThrottle.Host() {
+                    @Override
+                    public int getPercent() {
+                        final int max = getMax();
+                        return max > 0 ? Math.round(100.0f * getProgress() / max) : 0;
+                    }
+
+                    @Override
+                    public void sendProgressEvent() {
+                        SaundProgressBar.super.sendAccessibilityEvent(
+                                AccessibilityEvent.TYPE_VIEW_SELECTED);
+                    }
+                }, SaundAccessibilityPolicy.DEFAULT);
+        mClockDriver = new ClockDriver(this, mRenderGate, new ClockDriver.Host() {
+            @Override
+            public void setClockProgress(int progress) {
+                SaundProgressBar.super.setProgress(progress);
+                invalidateProgress();
             }
-
-            int textStyle = (a
-                    .getInt(R.styleable.SaundProgressBar_textStyle, 1));
-            if (textStyle == 0) {
-                mTextPaint.setTextSkewX(0.0f);
-                mTextPaint.setFakeBoldText(false);
-            } else if (textStyle == 1) {
-                mTextPaint.setTextSkewX(0.0f);
-                mTextPaint.setFakeBoldText(true);
-            } else if (textStyle == 2) {
-                mTextPaint.setTextSkewX(-0.25f);
-                mTextPaint.setFakeBoldText(false);
+        });
+
+        // a single callback drives every frame of the indeterminate animation
+        mIndeterminateFrame = new Runnable() {
+            @Override
+            public void run() {
+                invalidate();
+                ViewCompat.postOnAnimationDelayed(SaundProgressBar.this, this,
+                        mFrameInterval);
             }
+        };
 
-            mIndicator = a.getDrawable(R.styleable.SaundProgressBar_progressIndicator);
-            mOffset = (int) a.getDimension(R.styleable.SaundProgressBar_offset, 0);
+        applyStyle(SaundStyle.obtain(context, attrs, defStyle));
+    }
 
-            a.recycle();
-        }
+    /**
+     * Applies a parsed style to this widget. The text paint is shared with
+     * every other widget using the same style until one of the text setters
+     * is called, the indicator shares its decoded state.
+     *
+     * @param style
+     */
+    public void applyStyle(SaundStyle style) {
+        mTextPaint = style.getTextPaint();
+        mTextPaintShared = true;
+        mIndicator = style.newIndicator(getResources());
+        mOffset = style.getOffset();
+        mSaundIndeterminate = style.isSaundIndeterminate();
+        setIndeterminateFrameRate(style.getIndeterminateFrameRate());
+        updateIndeterminateAnimation();
+        invalidate();
+    }
+
+    /**
+     * Switches between the saund indeterminate animation, which reuses the
+     * progress layer, pattern overlay and indicator, and the platform's
+     * indeterminate drawable.
+     *
+     * @param saund
+     */
+    public void setSaundIndeterminate(boolean saund) {
+        mSaundIndeterminate = saund;
+        updateIndeterminateAnimation();
+        invalidate();
+    }
+
+    /**
+     * Caps the number of frames per second drawn by the saund indeterminate
+     * animation. The default is 30.
+     *
+     * @param fps
+     */
+    public void setIndeterminateFrameRate(int fps) {
+        mFrameInterval = 1000 / Math.max(1, Math.min(fps, 1000));
     }
 
     /**
@@ -121,11 +174,39 @@ public class SaundProgressBar extends ProgressBar {
      * displayed in the progress indicator. The default text format is X% where
      * X is [0,100]. To use the formatter you must provide an object which
      * implements the {@linkplain SaundProgressBar.Formatter} interface.
+     * <p>
+     * Formatted labels are memoized per progress value, so the formatter is
+     * only called when the progress changes to a value that is not cached.
      *
      * @param formatter
      */
     public void setTextFormatter(Formatter formatter) {
-        mFormatter = formatter;
+        setTextFormatter(formatter, null);
+    }
+
+    /**
+     * Same as {@link #setTextFormatter(Formatter)} but the labels are formatted
+     * on the given executor instead of the UI thread. A new label is swapped in
+     * on the next frame after it is ready, the last label is shown until then.
+     * Passing a null executor formats on the UI thread.
+     *
+     * @param formatter
+     * @param executor
+     */
+    public void setTextFormatter(Formatter formatter, Executor executor) {
+        mLabelCache.setFormatter(formatter, executor);
+        invalidate();
+    }
+
+    /**
+     * Sets how many formatted labels are kept around. The default is enough for
+     * a bar that moves forward, a bar that is scrubbed back and forth over
+     * many values benefits from a larger cache.
+     *
+     * @param size
+     */
+    public void setLabelCacheSize(int size) {
+        mLabelCache.ensureCapacity(size);
     }
 
     /**
@@ -143,7 +224,7 @@ public class SaundProgressBar extends ProgressBar {
      * @param color
      */
     public void setTextColor(int color) {
-        mTextPaint.setColor(color);
+        mutableTextPaint().setColor(color);
     }
 
     /**
@@ -152,7 +233,7 @@ public class SaundProgressBar extends ProgressBar {
      * @param size
      */
     public void setTextSize(float size) {
-        mTextPaint.setTextSize(size);
+        mutableTextPaint().setTextSize(size);
     }
 
     /**
@@ -161,7 +242,7 @@ public class SaundProgressBar extends ProgressBar {
      * @param bold
      */
     public void setTextBold(boolean bold) {
-        mTextPaint.setFakeBoldText(true);
+        mutableTextPaint().setFakeBoldText(true);
     }
 
     /**
@@ -170,7 +251,7 @@ public class SaundProgressBar extends ProgressBar {
      * @param align
      */
     public void setTextAlign(Align align) {
-        mTextPaint.setTextAlign(align);
+        mutableTextPaint().setTextAlign(align);
     }
 
     /**
@@ -180,6 +261,16 @@ public class SaundProgressBar extends ProgressBar {
      */
     public void setPaint(TextPaint paint) {
         mTextPaint = paint;
+        mTextPaintShared = false;
+    }
+
+    private TextPaint mutableTextPaint() {
+        // the paint may still be the prototype of a shared style
+        if (mTextPaintShared) {
+            mTextPaint = SaundStyle.copyTextPaint(mTextPaint);
+            mTextPaintShared = false;
+        }
+        return mTextPaint;
     }
 
     @Override
@@ -257,6 +348,11 @@ public class SaundProgressBar extends ProgressBar {
             }
         }
 
+        if (mSaundIndeterminate && isIndeterminate()) {
+            drawIndeterminate(canvas, progressDrawable);
+            return;
+        }
+
         // update the size of the progress bar and overlay
         updateProgressBar();
 
@@ -294,26 +390,313 @@ public class SaundProgressBar extends ProgressBar {
 
             mIndicator.draw(canvas);
 
-            canvas.drawText(
-                    mFormatter != null ? mFormatter.getText(getProgress())
-                            : Math.round(getScale(getProgress()) * 100.0f)
-                            + "%", getIndicatorWidth() / 2,
-                    getIndicatorHeight() / 2 + 1, mTextPaint);
+            canvas.drawText(mLabelCache.get(getProgress(), getMax()),
+                    getIndicatorWidth() / 2, getIndicatorHeight() / 2 + 1,
+                    mTextPaint);
 
             // restore canvas to original
             canvas.restore();
         }
     }
 
+    /**
+     * Draws the track and a segment of the progress bar whose position is
+     * derived from the clock, so a frame that is skipped doesn't slow the
+     * animation down. The segment layers keep the same bounds on every frame,
+     * they are moved with the canvas and clipped to the track, so drawables
+     * which rebuild their paths on a bounds change don't do so per frame.
+     */
+    private void drawIndeterminate(Canvas canvas, Drawable progressDrawable) {
+        if (progressDrawable == null) {
+            return;
+        }
+
+        canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+
+        if (!(progressDrawable instanceof LayerDrawable)) {
+            progressDrawable.draw(canvas);
+            canvas.restore();
+            return;
+        }
+
+        LayerDrawable d = (LayerDrawable) progressDrawable;
+        Drawable progressBar = d.findDrawableByLayerId(R.id.progress);
+        Drawable patternOverlay = d.findDrawableByLayerId(R.id.pattern);
+
+        if (progressBar == null && patternOverlay == null) {
+            d.draw(canvas);
+            canvas.restore();
+            return;
+        }
+
+        final float phase = (SystemClock.uptimeMillis() % INDETERMINATE_PERIOD)
+                / (float) INDETERMINATE_PERIOD;
+        final int left = d.getBounds().left;
+        final int width = d.getBounds().right - left;
+        final int segmentWidth = (int) (width * INDETERMINATE_SEGMENT + 0.5f);
+        final int start = left - segmentWidth
+                + (int) ((width + segmentWidth) * phase + 0.5f);
+
+        // draw every other layer as it is
+        for (int i = 0; i < d.getNumberOfLayers(); i++) {
+            Drawable layer = d.getDrawable(i);
+            if (layer != progressBar && layer != patternOverlay) {
+                layer.draw(canvas);
+            }
+        }
+
+        // a segment sized layer at the start of the track, the pattern
+        // overlay sits inside the bounds of the progress bar
+        fitSegment(progressBar, left, left + segmentWidth);
+        if (progressBar != null) {
+            fitSegment(patternOverlay, segmentWidth > 1 ? left + 1 : left,
+                    segmentWidth > 1 ? left + segmentWidth - 1 : left + segmentWidth);
+        } else {
+            fitSegment(patternOverlay, left, left + segmentWidth);
+        }
+
+        canvas.save();
+        canvas.clipRect(left, -getPaddingTop(), left + width,
+                getHeight() - getPaddingTop());
+        canvas.translate(start - left, 0);
+        if (progressBar != null) {
+            progressBar.draw(canvas);
+        }
+        if (patternOverlay != null) {
+            patternOverlay.draw(canvas);
+        }
+        canvas.restore();
+
+        canvas.restore();
+
+        if (mIndicator != null) {
+            final int segmentRight = Math.max(left, Math.min(left + width,
+                    start + segmentWidth));
+            canvas.save();
+            canvas.translate(segmentRight - getIndicatorWidth() / 2 - mOffset
+                    + getPaddingLeft(), 0);
+            mIndicator.draw(canvas);
+            canvas.drawText(mLabelCache.get(getProgress(), getMax()),
+                    getIndicatorWidth() / 2, getIndicatorHeight() / 2 + 1,
+                    mTextPaint);
+            canvas.restore();
+        }
+    }
+
+    /**
+     * Gives a layer the horizontal extent of the segment. This is a no-op on
+     * every frame but the first, setBounds() ignores unchanged bounds.
+     */
+    private static void fitSegment(Drawable layer, int left, int right) {
+        if (layer == null) {
+            return;
+        }
+
+        final Rect bounds = layer.getBounds();
+        layer.setBounds(left, bounds.top, right, bounds.bottom);
+    }
+
+    @Override
+    public synchronized void setIndeterminate(boolean indeterminate) {
+        super.setIndeterminate(indeterminate);
+        updateIndeterminateAnimation();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mRenderGate.setAttached(true);
+        onRenderStateChanged();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        mRenderGate.setAttached(false);
+        onRenderStateChanged();
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        onRenderStateChanged();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        onRenderStateChanged();
+    }
+
+    /**
+     * Redraws the progress applied while we were hidden as soon as we can be
+     * seen again, and starts or stops the animations.
+     */
+    private void onRenderStateChanged() {
+        // called by the ProgressBar constructor before we are initialised
+        if (mRenderGate == null) {
+            return;
+        }
+
+        if (mRenderGate.update()) {
+            mClockDriver.resume();
+            invalidate();
+        } else if (!mRenderGate.isRendering()) {
+            mClockDriver.pause();
+            mAccessibilityThrottle.cancel();
+        }
+        updateIndeterminateAnimation();
+    }
+
+    /**
+     * Binds the progress bar to a time source, e.g. the playback position of a
+     * media player. The progress bar then advances by itself between two calls,
+     * but only redraws while it can be seen and only when the extrapolated
+     * progress moves it by at least a pixel. Call again on seek, pause (a rate
+     * of 0) or rate change. Any call to {@link #setProgress(int)} unbinds it.
+     *
+     * @param position  the progress at the given timestamp
+     * @param rate      progress units per millisecond, e.g. 1 if the max is
+     *                  the duration in milliseconds and playback runs at
+     *                  normal speed
+     * @param timestamp the {@link SystemClock#uptimeMillis()} at which the
+     *                  position was sampled
+     */
+    public void setTimeSource(long position, float rate, long timestamp) {
+        mClockDriver.set(position, rate, timestamp);
+    }
+
+    /**
+     * Unbinds the progress bar from its time source, it keeps the progress it
+     * had reached.
+     */
+    public void clearTimeSource() {
+        mClockDriver.clear();
+    }
+
+    /**
+     * Sets how often the progress bar reports its progress to accessibility
+     * services, see {@link SaundAccessibilityPolicy}. The default is
+     * {@link SaundAccessibilityPolicy#DEFAULT}, null sends every event the
+     * platform generates.
+     *
+     * @param policy
+     */
+    public void setAccessibilityPolicy(SaundAccessibilityPolicy policy) {
+        mAccessibilityThrottle.setPolicy(policy);
+    }
+
+    public SaundAccessibilityPolicy getAccessibilityPolicy() {
+        return mAccessibilityThrottle.getPolicy();
+    }
+
+    @Override
+    public void sendAccessibilityEvent(int eventType) {
+        // ProgressBar reports progress changes as selection events, these go
+        // through the policy and are dropped while we can't be seen
+        if (eventType == AccessibilityEvent.TYPE_VIEW_SELECTED
+                && mAccessibilityThrottle != null
+                && mAccessibilityThrottle.getPolicy() != null) {
+            if (mRenderGate.isRendering()) {
+                mAccessibilityThrottle.onProgressEvent();
+            }
+            return;
+        }
+        super.sendAccessibilityEvent(eventType);
+    }
+
+    /**
+     * Returns the number of progress updates that were only recorded because
+     * the progress bar was detached or hidden at the time.
+     */
+    public int getSuppressedUpdateCount() {
+        return mRenderGate.getSuppressedUpdates();
+    }
+
+    /**
+     * Starts the saund indeterminate animation if it should be visible and
+     * stops it completely otherwise.
+     */
+    private void updateIndeterminateAnimation() {
+        // called by the ProgressBar constructor before we are initialised
+        if (mIndeterminateFrame == null) {
+            return;
+        }
+
+        final boolean run = mSaundIndeterminate && isIndeterminate()
+                && mRenderGate.isRendering();
+
+        if (run && !mIndeterminateRunning) {
+            mIndeterminateRunning = true;
+            ViewCompat.postOnAnimation(this, mIndeterminateFrame);
+        } else if (!run && mIndeterminateRunning) {
+            mIndeterminateRunning = false;
+            removeCallbacks(mIndeterminateFrame);
+        }
+    }
+
+    @Override
+    public void invalidateDrawable(Drawable dr) {
+        // the platform's indeterminate drawable is not shown in saund mode
+        if (mSaundIndeterminate && dr == getIndeterminateDrawable()) {
+            return;
+        }
+        super.invalidateDrawable(dr);
+    }
+
+    @Override
+    public void scheduleDrawable(Drawable who, Runnable what, long when) {
+        // nor does it get to run its own animation
+        if (mSaundIndeterminate && who == getIndeterminateDrawable()) {
+            return;
+        }
+        super.scheduleDrawable(who, what, when);
+    }
+
     @Override
     public synchronized void setProgress(int progress) {
+        clearClockOnUpdate();
         super.setProgress(progress);
+        invalidateProgress();
+    }
+
+    @TargetApi(Build.VERSION_CODES.N)
+    @Override
+    public void setProgress(int progress, boolean animate) {
+        // ProgressBar doesn't route this through setProgress(int)
+        clearClockOnUpdate();
+        super.setProgress(progress, animate);
+        invalidateProgress();
+    }
+
+    private void clearClockOnUpdate() {
+        // an explicit progress replaces the time source
+        if (mClockDriver != null) {
+            mClockDriver.cancel();
+        }
+    }
+
+    private void invalidateProgress() {
+        // while we can't be seen the progress is only applied, we are redrawn
+        // once we can be seen again
+        if (mRenderGate != null && mRenderGate.suppress()) {
+            return;
+        }
 
         // the setProgress super will not change the details of the progress bar
         // anymore so we need to force an update to redraw the progress bar
         invalidate();
     }
 
+    @Override
+    public synchronized int getProgress() {
+        if (mClockDriver != null && mClockDriver.isBound()) {
+            return mClockDriver.progress();
+        }
+        return super.getProgress();
+    }
+
     private float getScale(int progress) {
         float scale = getMax() > 0 ? (float) progress / (float) getMax() : 0;
         return scale;
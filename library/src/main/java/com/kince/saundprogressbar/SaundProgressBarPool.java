@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2018 kince
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kince.saundprogressbar;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.widget.ProgressBar;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * A bounded pool of pre-built progress bars. Screens which show dozens of
+ * SaundProgressBars or SaundSeekBars otherwise pay for constructing all of
+ * them on the main thread during their first layout. The pool builds the
+ * widgets ahead of time while the main thread is idle, a few at a time, so
+ * their attributes are parsed and their indicator drawables and paints are
+ * ready when {@link #acquire()} hands them out.
+ * <p>
+ * The widgets themselves are always built on the main thread: ProgressBar
+ * remembers the thread it was constructed on and posts every later progress
+ * refresh made from another thread. An executor only takes over the work that
+ * doesn't belong to a widget, parsing the style and decoding its drawables
+ * into the caches the widgets are later built from.
+ * <p>
+ * The pool keeps a reference to its context. Call {@link #clear()} when the
+ * screen that owns the pool goes away.
+ *
+ * @author kince
+ */
+public class SaundProgressBarPool<T extends ProgressBar> {
+
+    // how long a single idle pass may spend building widgets, so a frame
+    // which becomes due meanwhile isn't held up for long
+    private static final long IDLE_BUDGET = 4;
+
+    private static final int[] PRELOAD_ATTRS = {
+            android.R.attr.progressDrawable,
+            android.R.attr.indeterminateDrawable,
+            android.R.attr.thumb
+    };
+
+    /**
+     * Builds a new widget for the pool. The factory is called on the main
+     * thread.
+     */
+    public interface Factory<T extends ProgressBar> {
+        public T create(Context context);
+    }
+
+    /**
+     * May be implemented by a {@link Factory} to do the work that doesn't need
+     * the main thread ahead of time, e.g. calling
+     * {@link SaundStyle#obtain(Context, AttributeSet, int)} for the style its
+     * widgets use. It is called on the executor passed to
+     * {@link SaundProgressBarPool#prewarm(int, Executor)}.
+     */
+    public interface Preloader {
+        public void preload(Context context);
+    }
+
+    private final Context mContext;
+    private final Factory<T> mFactory;
+    private final int mMaxSize;
+    private final ArrayList<T> mPool;
+    private final Handler mMainHandler;
+    private int mPending;
+    private int mGeneration;
+
+    public SaundProgressBarPool(Context context, Factory<T> factory, int maxSize) {
+        mContext = context;
+        mFactory = factory;
+        mMaxSize = maxSize;
+        mPool = new ArrayList<>(maxSize);
+        mMainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Creates a pool of SaundProgressBars built with the given default style
+     * attribute, e.g. android.R.attr.progressBarStyleHorizontal.
+     *
+     * @param context
+     * @param defStyle
+     * @param maxSize
+     */
+    public static SaundProgressBarPool<SaundProgressBar> forProgressBars(
+            Context context, final int defStyle, int maxSize) {
+        return new SaundProgressBarPool<>(context, new StyleFactory<SaundProgressBar>(defStyle) {
+            @Override
+            public SaundProgressBar create(Context context) {
+                return new SaundProgressBar(context, null, defStyle);
+            }
+        }, maxSize);
+    }
+
+    /**
+     * Creates a pool of SaundSeekBars built with the given default style
+     * attribute, e.g. android.R.attr.seekBarStyle.
+     *
+     * @param context
+     * @param defStyle
+     * @param maxSize
+     */
+    public static SaundProgressBarPool<SaundSeekBar> forSeekBars(
+            Context context, final int defStyle, int maxSize) {
+        return new SaundProgressBarPool<>(context, new StyleFactory<SaundSeekBar>(defStyle) {
+            @Override
+            public SaundSeekBar create(Context context) {
+                return new SaundSeekBar(context, null, defStyle);
+            }
+        }, maxSize);
+    }
+
+    /**
+     * Builds up to count widgets while the main thread's message queue runs
+     * idle. Must be called from the main thread.
+     *
+     * @param count
+     */
+    public void prewarm(int count) {
+        final int reserved;
+        final int generation;
+        synchronized (mPool) {
+            reserved = reserve(count);
+            generation = mGeneration;
+        }
+        build(reserved, generation);
+    }
+
+    /**
+     * Same as {@link #prewarm(int)}, but the factory's {@link Preloader} runs
+     * on the given executor first. The widgets are built on the main thread
+     * once it is done. Can be called from any thread.
+     *
+     * @param count
+     * @param executor
+     */
+    public void prewarm(int count, Executor executor) {
+        final int reserved;
+        final int generation;
+        synchronized (mPool) {
+            reserved = reserve(count);
+            generation = mGeneration;
+        }
+        if (reserved == 0) {
+            return;
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (mFactory instanceof Preloader && generation == generation()) {
+                    try {
+                        ((Preloader) mFactory).preload(mContext);
+                    } catch (RuntimeException e) {
+                        // e.g. a drawable in the style needs a Looper, the
+                        // widgets will load it themselves
+                    }
+                }
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        build(reserved, generation);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Builds the reserved widgets on the main thread, as many per idle pass
+     * as fit in {@link #IDLE_BUDGET}.
+     */
+    private void build(final int reserved, final int generation) {
+        if (reserved == 0 || generation != generation()) {
+            return;
+        }
+
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+
+            private int mRemaining = reserved;
+
+            @Override
+            public boolean queueIdle() {
+                final long start = SystemClock.uptimeMillis();
+                do {
+                    // don't build anything for a pool that was cleared meanwhile
+                    if (generation != generation()) {
+                        return false;
+                    }
+                    add(mFactory.create(mContext), generation);
+                } while (--mRemaining > 0
+                        && SystemClock.uptimeMillis() - start < IDLE_BUDGET);
+                return mRemaining > 0;
+            }
+        });
+    }
+
+    /**
+     * Returns a pre-built widget, or builds a new one on the calling thread if
+     * the pool is empty.
+     */
+    public T acquire() {
+        synchronized (mPool) {
+            final int size = mPool.size();
+            if (size > 0) {
+                return mPool.remove(size - 1);
+            }
+        }
+        return mFactory.create(mContext);
+    }
+
+    /**
+     * Returns a widget to the pool so it can be handed out again. Widgets that
+     * are still attached to a parent or that don't fit in the pool are
+     * rejected.
+     *
+     * @param view
+     * @return true if the widget was added to the pool
+     */
+    public boolean release(T view) {
+        if (view.getParent() != null) {
+            return false;
+        }
+
+        synchronized (mPool) {
+            if (mPool.size() + mPending >= mMaxSize) {
+                return false;
+            }
+            mPool.add(view);
+            return true;
+        }
+    }
+
+    /**
+     * Returns the number of widgets that are ready to be handed out.
+     */
+    public int size() {
+        synchronized (mPool) {
+            return mPool.size();
+        }
+    }
+
+    /**
+     * Drops every pooled widget. Widgets that are still being built are
+     * dropped as soon as they are done.
+     */
+    public void clear() {
+        synchronized (mPool) {
+            mPool.clear();
+            mPending = 0;
+            mGeneration++;
+        }
+    }
+
+    private int reserve(int count) {
+        synchronized (mPool) {
+            final int reserved = Math.max(0, Math.min(count,
+                    mMaxSize - mPool.size() - mPending));
+            mPending += reserved;
+            return reserved;
+        }
+    }
+
+    private int generation() {
+        synchronized (mPool) {
+            return mGeneration;
+        }
+    }
+
+    private void add(T view, int generation) {
+        synchronized (mPool) {
+            if (generation != mGeneration) {
+                return;
+            }
+            mPending--;
+            if (mPool.size() < mMaxSize) {
+                mPool.add(view);
+            }
+        }
+    }
+
+    /**
+     * The factory of the built-in pools, it preloads the Saund style and the
+     * drawables of the default style the widgets are built with.
+     */
+    private abstract static class StyleFactory<T extends ProgressBar>
+            implements Factory<T>, Preloader {
+
+        private final int mDefStyle;
+
+        StyleFactory(int defStyle) {
+            mDefStyle = defStyle;
+        }
+
+        @Override
+        public void preload(Context context) {
+            SaundStyle.obtain(context, null, mDefStyle);
+
+            // the resources keep what they decoded, the widgets only have to
+            // create their own instances from it
+            TypedArray a = context.obtainStyledAttributes(null, PRELOAD_ATTRS,
+                    mDefStyle, 0);
+            for (int i = 0; i < PRELOAD_ATTRS.length; i++) {
+                a.getDrawable(i);
+            }
+            a.recycle();
+        }
+    }
+}
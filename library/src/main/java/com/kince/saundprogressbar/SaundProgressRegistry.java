@@ -0,0 +1,477 @@
+/*
+ * Copyright (C) 2018 kince
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kince.saundprogressbar;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.widget.ProgressBar;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latest progress of a large number of items, e.g. the downloads of
+ * a download manager, and forwards it to the few progress bars that currently
+ * show one of them, e.g. the bound rows of a RecyclerView.
+ * <p>
+ * The state is kept in an open addressed table of primitive arrays, so an
+ * update for an item that isn't on screen is a single store. Updates may come
+ * from any thread. Changes of bound items are collected and applied to their
+ * views in one pass on the main thread right before the next frame is drawn,
+ * no matter how many updates arrived in between.
+ * <p>
+ * The registry holds on to every bound view until it is unbound, so views must
+ * be unbound once they stop showing an item, e.g. when a RecyclerView row is
+ * recycled or the screen is destroyed.
+ *
+ * @author kince
+ */
+public class SaundProgressRegistry {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int UNKNOWN = -1;
+    private static final int DEFAULT_MAX = 100;
+
+    // the item table, indexed by slot
+    private long[] mKeys;
+    private int[] mProgress;
+    private int[] mMax;
+    private int[] mBinding;
+    private int mSize;
+
+    // the bound views, indexed by binding
+    private ProgressBar[] mViews;
+    private long[] mViewIds;
+    private boolean[] mDirty;
+    private int mViewCount;
+
+    // scratch space for applying changes outside of the lock
+    private ProgressBar[] mApplyViews;
+    private int[] mApplyProgress;
+    private int[] mApplyMax;
+
+    private final Handler mMainHandler;
+    private final Runnable mFlush;
+    // asks for a frame on the main thread, where the Choreographer lives
+    private final Runnable mScheduleFrame;
+    private Object mFrameCallback;
+    private boolean mFlushScheduled;
+
+    public SaundProgressRegistry() {
+        this(64);
+    }
+
+    /**
+     * @param expectedItems the number of items the table is sized for
+     *                      initially, it grows as needed
+     */
+    public SaundProgressRegistry(int expectedItems) {
+        allocateTable(tableSizeFor(expectedItems));
+        allocateBindings(16);
+
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mFlush = new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        };
+        mScheduleFrame = new Runnable() {
+            @Override
+            public void run() {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                    postFrameCallback();
+                } else {
+                    // no Choreographer yet, flush right after this message
+                    mMainHandler.post(mFlush);
+                }
+            }
+        };
+    }
+
+    /**
+     * Records the progress of an item. Can be called from any thread.
+     *
+     * @param id       the item id, anything but Long.MIN_VALUE
+     * @param progress the progress, at least 0
+     * @param max      the max, at least 0
+     */
+    public void update(long id, int progress, int max) {
+        checkId(id);
+        // a negative progress would read as an unknown item
+        if (progress < 0 || max < 0) {
+            throw new IllegalArgumentException("Negative progress " + progress
+                    + " or max " + max);
+        }
+
+        synchronized (this) {
+            int slot = find(id);
+            if (slot < 0) {
+                slot = insert(id);
+            }
+
+            mProgress[slot] = progress;
+            mMax[slot] = max;
+
+            final int binding = mBinding[slot];
+            if (binding >= 0) {
+                mDirty[binding] = true;
+                scheduleFlush();
+            }
+        }
+    }
+
+    /**
+     * Records the progress of an item and keeps its max, which is 100 for
+     * items that were never updated before.
+     *
+     * @param id
+     * @param progress
+     */
+    public void update(long id, int progress) {
+        checkId(id);
+
+        synchronized (this) {
+            final int slot = find(id);
+            update(id, progress, slot >= 0 && mMax[slot] != UNKNOWN
+                    ? mMax[slot] : DEFAULT_MAX);
+        }
+    }
+
+    /**
+     * Returns the latest progress of an item, or -1 if it is unknown.
+     *
+     * @param id
+     */
+    public synchronized int getProgress(long id) {
+        final int slot = find(id);
+        return slot >= 0 ? mProgress[slot] : UNKNOWN;
+    }
+
+    /**
+     * Forgets an item. A view bound to it keeps showing its last progress.
+     *
+     * @param id
+     */
+    public synchronized void remove(long id) {
+        final int slot = find(id);
+        if (slot < 0) {
+            return;
+        }
+
+        if (mBinding[slot] >= 0) {
+            // the binding still needs the slot
+            mProgress[slot] = UNKNOWN;
+            mMax[slot] = UNKNOWN;
+        } else {
+            delete(slot);
+        }
+    }
+
+    /**
+     * Returns the number of items that are known.
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Shows an item in a view, replacing whatever the view was bound to. An
+     * item is shown in one view at a time, a view it was bound to before stops
+     * getting its updates. The latest known progress is applied right away.
+     * Must be called on the main thread.
+     * <p>
+     * The view is kept until {@link #unbind(ProgressBar)} is called for it or
+     * it is bound to another item. A view that is never unbound leaks along
+     * with its Context for as long as the registry lives.
+     *
+     * @param id
+     * @param view
+     */
+    public void bind(long id, ProgressBar view) {
+        checkId(id);
+
+        final int progress;
+        final int max;
+        synchronized (this) {
+            unbindLocked(view);
+
+            int slot = find(id);
+            if (slot >= 0 && mBinding[slot] >= 0) {
+                // the item moves from its previous view, which may also have
+                // deleted a removed item
+                removeBinding(mBinding[slot]);
+                slot = find(id);
+            }
+            if (slot < 0) {
+                slot = insert(id);
+                mProgress[slot] = UNKNOWN;
+                mMax[slot] = UNKNOWN;
+            }
+
+            if (mViewCount == mViews.length) {
+                allocateBindings(mViews.length * 2);
+            }
+
+            final int binding = mViewCount++;
+            mViews[binding] = view;
+            mViewIds[binding] = id;
+            mDirty[binding] = false;
+            mBinding[slot] = binding;
+
+            progress = mProgress[slot];
+            max = mMax[slot];
+        }
+
+        if (progress != UNKNOWN) {
+            apply(view, progress, max);
+        }
+    }
+
+    /**
+     * Stops forwarding updates to a view. Must be called on the main thread.
+     *
+     * @param view
+     */
+    public synchronized void unbind(ProgressBar view) {
+        unbindLocked(view);
+    }
+
+    private void unbindLocked(ProgressBar view) {
+        for (int i = 0; i < mViewCount; i++) {
+            if (mViews[i] == view) {
+                removeBinding(i);
+                return;
+            }
+        }
+    }
+
+    private void removeBinding(int binding) {
+        final int slot = find(mViewIds[binding]);
+        if (slot >= 0) {
+            mBinding[slot] = -1;
+            // an item removed while it was bound can go now
+            if (mProgress[slot] == UNKNOWN) {
+                delete(slot);
+            }
+        }
+
+        // move the last binding into the gap
+        final int last = --mViewCount;
+        if (binding != last) {
+            mViews[binding] = mViews[last];
+            mViewIds[binding] = mViewIds[last];
+            mDirty[binding] = mDirty[last];
+            mBinding[find(mViewIds[binding])] = binding;
+        }
+        mViews[last] = null;
+    }
+
+    private void scheduleFlush() {
+        if (!mFlushScheduled) {
+            mFlushScheduled = true;
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                mScheduleFrame.run();
+            } else {
+                mMainHandler.post(mScheduleFrame);
+            }
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback() {
+        if (mFrameCallback == null) {
+            mFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    flush();
+                }
+            };
+        }
+        Choreographer.getInstance().postFrameCallback(
+                (Choreographer.FrameCallback) mFrameCallback);
+    }
+
+    /**
+     * Applies the latest state of every changed item to its view. The state is
+     * copied under the lock, the views are updated outside of it.
+     */
+    private void flush() {
+        int count = 0;
+        synchronized (this) {
+            mFlushScheduled = false;
+
+            for (int i = 0; i < mViewCount; i++) {
+                if (!mDirty[i]) {
+                    continue;
+                }
+                mDirty[i] = false;
+
+                final int slot = find(mViewIds[i]);
+                if (slot < 0 || mProgress[slot] == UNKNOWN) {
+                    continue;
+                }
+
+                mApplyViews[count] = mViews[i];
+                mApplyProgress[count] = mProgress[slot];
+                mApplyMax[count] = mMax[slot];
+                count++;
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            apply(mApplyViews[i], mApplyProgress[i], mApplyMax[i]);
+            mApplyViews[i] = null;
+        }
+    }
+
+    private static void apply(ProgressBar view, int progress, int max) {
+        if (view.getMax() != max) {
+            view.setMax(max);
+        }
+        view.setProgress(progress);
+    }
+
+    private static void checkId(long id) {
+        if (id == EMPTY) {
+            throw new IllegalArgumentException("Long.MIN_VALUE can't be used as an id");
+        }
+    }
+
+    private static int hash(long key) {
+        final long h = key * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSizeFor(int items) {
+        // keep the table at most half full
+        int size = 16;
+        while (size < items * 2) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    private int find(long id) {
+        final int mask = mKeys.length - 1;
+        int slot = hash(id) & mask;
+        while (true) {
+            final long key = mKeys[slot];
+            if (key == id) {
+                return slot;
+            }
+            if (key == EMPTY) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int insert(long id) {
+        if ((mSize + 1) * 2 > mKeys.length) {
+            resize(mKeys.length * 2);
+        }
+
+        final int mask = mKeys.length - 1;
+        int slot = hash(id) & mask;
+        while (mKeys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+
+        mKeys[slot] = id;
+        mBinding[slot] = -1;
+        mSize++;
+        return slot;
+    }
+
+    /**
+     * Removes the entry in a slot and shifts the entries of its probe
+     * sequence back, so no tombstones are needed.
+     */
+    private void delete(int slot) {
+        final int mask = mKeys.length - 1;
+        int gap = slot;
+        int i = slot;
+
+        while (true) {
+            i = (i + 1) & mask;
+            final long key = mKeys[i];
+            if (key == EMPTY) {
+                break;
+            }
+
+            // an entry may only move back if its home isn't between the gap
+            // and its current slot
+            final int home = hash(key) & mask;
+            final boolean stays = gap <= i
+                    ? gap < home && home <= i
+                    : gap < home || home <= i;
+            if (stays) {
+                continue;
+            }
+
+            mKeys[gap] = key;
+            mProgress[gap] = mProgress[i];
+            mMax[gap] = mMax[i];
+            mBinding[gap] = mBinding[i];
+            gap = i;
+        }
+
+        mKeys[gap] = EMPTY;
+        mBinding[gap] = -1;
+        mSize--;
+    }
+
+    private void resize(int capacity) {
+        final long[] keys = mKeys;
+        final int[] progress = mProgress;
+        final int[] max = mMax;
+        final int[] binding = mBinding;
+
+        allocateTable(capacity);
+        mSize = 0;
+
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                final int slot = insert(keys[i]);
+                mProgress[slot] = progress[i];
+                mMax[slot] = max[i];
+                mBinding[slot] = binding[i];
+            }
+        }
+    }
+
+    private void allocateTable(int capacity) {
+        mKeys = new long[capacity];
+        Arrays.fill(mKeys, EMPTY);
+        mProgress = new int[capacity];
+        mMax = new int[capacity];
+        mBinding = new int[capacity];
+        Arrays.fill(mBinding, -1);
+    }
+
+    private void allocateBindings(int capacity) {
+        mViews = mViews != null ? Arrays.copyOf(mViews, capacity) : new ProgressBar[capacity];
+        mViewIds = mViewIds != null ? Arrays.copyOf(mViewIds, capacity) : new long[capacity];
+        mDirty = mDirty != null ? Arrays.copyOf(mDirty, capacity) : new boolean[capacity];
+        mApplyViews = new ProgressBar[capacity];
+        mApplyProgress = new int[capacity];
+        mApplyMax = new int[capacity];
+    }
+}
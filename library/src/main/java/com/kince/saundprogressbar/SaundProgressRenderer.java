@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2018 kince
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kince.saundprogressbar;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.LayerDrawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.content.ContextCompat;
+import android.text.TextPaint;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Draws the Saund progress bar, its indicator and label into a bitmap, for
+ * places which can't host a SaundProgressBar such as notifications and home
+ * screen widgets (RemoteViews don't support custom views).
+ * <p>
+ * A new image is only drawn when the visible position of the bar or the label
+ * changes, otherwise the previous bitmap is returned again. Bitmaps come from
+ * a {@link SaundBitmapPool}: a returned bitmap stays untouched until the
+ * second image drawn after it, after which it goes back to the pool. A bitmap
+ * passed to a {@link Callback} is not reused before the callback has returned.
+ * Rendering may happen on any thread, the renderer owns its own drawables.
+ * Asynchronous renders are numbered, one that was requested before an image
+ * already drawn or delivered is dropped, so a callback never goes backwards.
+ *
+ * @author kince
+ */
+public class SaundProgressRenderer {
+
+    /**
+     * Receives a newly drawn image on the main thread.
+     */
+    public interface Callback {
+        public void onRendered(Bitmap bitmap);
+    }
+
+    private final int mWidth;
+    private final int mHeight;
+    private final SaundBitmapPool mBitmapPool;
+    private final Handler mMainHandler;
+    private final Canvas mCanvas;
+    // bitmaps posted to a callback which hasn't run yet
+    private final ArrayList<Bitmap> mDelivering = new ArrayList<>(2);
+
+    private Drawable mProgressDrawable;
+    private Drawable mIndicator;
+    private int mOffset;
+    private TextPaint mTextPaint;
+    private SaundProgressBar.Formatter mFormatter;
+
+    // the state of the last drawn image
+    private Bitmap mCurrent;
+    private Bitmap mPrevious;
+    private int mLastRight = -1;
+    private String mLastLabel;
+    private int mLastProgress = -1;
+    private int mLastMax = -1;
+    private boolean mDirty = true;
+
+    // numbers the asynchronous renders in the order they were requested
+    private int mRequestedSequence;
+    private int mRenderedSequence;
+    // only used on the main thread
+    private int mDeliveredSequence;
+
+    public SaundProgressRenderer(Context context, int width, int height) {
+        this(context, width, height, SaundStyle.obtain(context, null, 0),
+                new SaundBitmapPool(2));
+    }
+
+    public SaundProgressRenderer(Context context, int width, int height,
+                                 SaundStyle style, SaundBitmapPool bitmapPool) {
+        mWidth = width;
+        mHeight = height;
+        mBitmapPool = bitmapPool;
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mCanvas = new Canvas();
+
+        mTextPaint = SaundStyle.copyTextPaint(style.getTextPaint());
+        mIndicator = sizeIndicator(style.newIndicator(context.getResources()));
+        mOffset = style.getOffset();
+        mProgressDrawable = ContextCompat.getDrawable(context, R.drawable.progressbar).mutate();
+    }
+
+    /**
+     * Sets the drawable of the bar, see
+     * {@link SaundProgressBar#setProgressDrawable(Drawable)}. The renderer
+     * changes its bounds, so it must not be used anywhere else.
+     *
+     * @param drawable
+     */
+    public synchronized void setProgressDrawable(Drawable drawable) {
+        mProgressDrawable = drawable;
+        mDirty = true;
+    }
+
+    /**
+     * Sets the drawable used as a progress indicator. Its bounds define its
+     * size, an indicator without bounds gets its intrinsic size.
+     *
+     * @param indicator
+     */
+    public synchronized void setProgressIndicator(Drawable indicator) {
+        mIndicator = sizeIndicator(indicator);
+        mDirty = true;
+    }
+
+    /**
+     * Sets the formatter of the indicator label. It is called on the thread
+     * that renders, and only when the progress changes.
+     *
+     * @param formatter
+     */
+    public synchronized void setTextFormatter(SaundProgressBar.Formatter formatter) {
+        mFormatter = formatter;
+        mLastMax = -1;
+        mDirty = true;
+    }
+
+    /**
+     * The additional offset is for tweaking the position of the indicator.
+     *
+     * @param offset
+     */
+    public synchronized void setOffset(int offset) {
+        mOffset = offset;
+        mDirty = true;
+    }
+
+    /**
+     * Set the text color
+     *
+     * @param color
+     */
+    public synchronized void setTextColor(int color) {
+        mTextPaint.setColor(color);
+        mDirty = true;
+    }
+
+    /**
+     * Set the text size.
+     *
+     * @param size
+     */
+    public synchronized void setTextSize(float size) {
+        mTextPaint.setTextSize(size);
+        mDirty = true;
+    }
+
+    /**
+     * Returns an image of the bar at the given progress. If neither the
+     * position of the bar nor the label changed since the last call the same
+     * bitmap is returned.
+     *
+     * @param progress
+     * @param max
+     */
+    public synchronized Bitmap render(int progress, int max) {
+        final float scale = max > 0 ? (float) Math.max(0, Math.min(progress, max)) / max : 0;
+        final int right = (int) (mWidth * scale + 0.5f);
+
+        // only format when the progress changes
+        if (progress != mLastProgress || max != mLastMax) {
+            mLastProgress = progress;
+            mLastMax = max;
+            String label = mFormatter != null ? mFormatter.getText(progress)
+                    : Math.round(scale * 100.0f) + "%";
+            if (label == null) {
+                label = "";
+            }
+            if (!label.equals(mLastLabel)) {
+                mLastLabel = label;
+                mDirty = true;
+            }
+        }
+
+        if (!mDirty && right == mLastRight && mCurrent != null) {
+            return mCurrent;
+        }
+
+        Bitmap bitmap = mBitmapPool.acquire(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+        mCanvas.setBitmap(bitmap);
+        draw(mCanvas, scale, right);
+        mCanvas.setBitmap(null);
+
+        // the previous image may still be in use by whoever got it last, and
+        // one that is still on its way to a callback is released once the
+        // callback is done with it
+        if (!mDelivering.contains(mPrevious)) {
+            mBitmapPool.release(mPrevious);
+        }
+        mPrevious = mCurrent;
+        mCurrent = bitmap;
+        mLastRight = right;
+        mDirty = false;
+        return bitmap;
+    }
+
+    /**
+     * Renders on the given executor and delivers the image on the main
+     * thread, but only if it differs from the last image and no render
+     * requested after this one has been drawn or delivered yet.
+     *
+     * @param progress
+     * @param max
+     * @param executor
+     * @param callback
+     */
+    public void renderAsync(final int progress, final int max, Executor executor,
+                            final Callback callback) {
+        final int sequence;
+        synchronized (this) {
+            sequence = ++mRequestedSequence;
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap;
+                synchronized (SaundProgressRenderer.this) {
+                    // a newer render got here first, drawing this one would
+                    // put an older image back
+                    if (sequence < mRenderedSequence) {
+                        return;
+                    }
+                    mRenderedSequence = sequence;
+
+                    final Bitmap last = mCurrent;
+                    bitmap = render(progress, max);
+                    if (bitmap == last) {
+                        return;
+                    }
+                    mDelivering.add(bitmap);
+                }
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // renders on different threads may post in any order
+                        if (sequence < mDeliveredSequence) {
+                            onDelivered(bitmap);
+                            return;
+                        }
+                        mDeliveredSequence = sequence;
+
+                        try {
+                            callback.onRendered(bitmap);
+                        } finally {
+                            onDelivered(bitmap);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Hands a bitmap back to the pool if it was retired while its callback was
+     * pending.
+     */
+    private synchronized void onDelivered(Bitmap bitmap) {
+        mDelivering.remove(bitmap);
+        if (bitmap != mCurrent && bitmap != mPrevious && !mDelivering.contains(bitmap)) {
+            mBitmapPool.release(bitmap);
+        }
+    }
+
+    /**
+     * Indicators from a style come without bounds, they get their intrinsic
+     * size.
+     */
+    private static Drawable sizeIndicator(Drawable indicator) {
+        if (indicator != null && indicator.getBounds().isEmpty()) {
+            indicator.setBounds(0, 0, indicator.getIntrinsicWidth(),
+                    indicator.getIntrinsicHeight());
+        }
+        return indicator;
+    }
+
+    private void draw(Canvas canvas, float scale, int right) {
+        final int indicatorWidth = mIndicator != null ? mIndicator.getBounds().width() : 0;
+        final int indicatorHeight = mIndicator != null ? mIndicator.getBounds().height() : 0;
+
+        if (mProgressDrawable != null) {
+            // the bar sits below the indicator
+            mProgressDrawable.setBounds(0, indicatorHeight, mWidth, mHeight);
+            updateProgressBar(scale);
+            mProgressDrawable.draw(canvas);
+        }
+
+        if (mIndicator != null) {
+            canvas.save();
+
+            // keep the indicator inside the image
+            int dx = right - indicatorWidth / 2 - mOffset;
+            dx = Math.max(0, Math.min(dx, mWidth - indicatorWidth));
+            canvas.translate(dx, 0);
+
+            mIndicator.draw(canvas);
+            canvas.drawText(mLastLabel, indicatorWidth / 2, indicatorHeight / 2 + 1,
+                    mTextPaint);
+
+            canvas.restore();
+        }
+    }
+
+    /**
+     * Resizes the progress and pattern layers the same way SaundProgressBar
+     * does, plain drawables get the progress as their level.
+     */
+    private void updateProgressBar(float scale) {
+        if (!(mProgressDrawable instanceof LayerDrawable)) {
+            mProgressDrawable.setLevel((int) (scale * 10000));
+            return;
+        }
+
+        LayerDrawable d = (LayerDrawable) mProgressDrawable;
+        final int width = d.getBounds().right - d.getBounds().left;
+
+        Drawable progressBar = d.findDrawableByLayerId(R.id.progress);
+        if (progressBar != null) {
+            Rect progressBarBounds = progressBar.getBounds();
+            progressBar.setBounds(progressBarBounds.left, progressBarBounds.top,
+                    progressBarBounds.left + (int) (width * scale + 0.5f),
+                    progressBarBounds.bottom);
+        }
+
+        Drawable patternOverlay = d.findDrawableByLayerId(R.id.pattern);
+        if (patternOverlay != null) {
+            Rect bounds = progressBar != null ? progressBar.getBounds()
+                    : patternOverlay.getBounds();
+            final int left = bounds.left;
+            final int top = bounds.top;
+            final int bottom = bounds.bottom;
+            final int right = progressBar != null ? bounds.right
+                    : left + (int) (width * scale + 0.5f);
+
+            if (progressBar != null) {
+                // we want our pattern overlay to sit inside the bounds of our
+                // progress bar
+                patternOverlay.setBounds((left + 1 > right) ? left : left + 1,
+                        top, (right > 0) ? right - 1 : right, bottom);
+            } else {
+                patternOverlay.setBounds(left, top, right, bottom);
+            }
+        }
+    }
+}
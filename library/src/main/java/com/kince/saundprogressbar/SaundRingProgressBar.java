@@ -0,0 +1,479 @@
+/*
+ * Copyright (C) 2018 kince
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kince.saundprogressbar;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Paint.Align;
+import android.graphics.RectF;
+import android.graphics.SweepGradient;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.text.TextPaint;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+import android.widget.ProgressBar;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A ring shaped sibling of the SaundProgressBar. It shares the text attributes,
+ * the progress indicator and the Formatter of the linear bars: the label is
+ * drawn in the middle of the ring and the indicator rides on the head of the
+ * arc.
+ * <p>
+ * The oval, the track and the optional sweep gradient are computed once per
+ * size, a frame only draws the track, the sweep and the label. Like the linear
+ * bars the ring isn't redrawn for progress updates while it can't be seen.
+ *
+ * @author kince
+ */
+public class SaundRingProgressBar extends ProgressBar {
+
+    private Drawable mIndicator;
+    private int mOffset;
+    private TextPaint mTextPaint;
+    private boolean mTextPaintShared;
+    private LabelCache mLabelCache;
+    private RenderGate mRenderGate;
+    private AccessibilityThrottle mAccessibilityThrottle;
+
+    private RectF mOval;
+    private Paint mTrackPaint;
+    private Paint mRingPaint;
+    private float mRingWidth;
+    private int mRingColor;
+    private int mRingEndColor;
+    private float mStartAngle;
+    private int mDefaultSize;
+
+    private float mCenterX;
+    private float mCenterY;
+    private float mRadius;
+
+    public SaundRingProgressBar(Context context) {
+        this(context, null);
+    }
+
+    public SaundRingProgressBar(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public SaundRingProgressBar(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+
+        mLabelCache = new LabelCache(this);
+        mRenderGate = new RenderGate(this);
+        mAccessibilityThrottle = new AccessibilityThrottle(this,
+                new AccessibilityThrottle.Host() {
+                    @Override
+                    public int getPercent() {
+                        final int max = getMax();
+                        return max > 0 ? Math.round(100.0f * getProgress() / max) : 0;
+                    }
+
+                    @Override
+                    public void sendProgressEvent() {
+                        SaundRingProgressBar.super.sendAccessibilityEvent(
+                                AccessibilityEvent.TYPE_VIEW_SELECTED);
+                    }
+                }, SaundAccessibilityPolicy.DEFAULT);
+        mOval = new RectF();
+        mDefaultSize = getResources().getDimensionPixelSize(R.dimen.saund_ring_size);
+
+        mTrackPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mTrackPaint.setStyle(Paint.Style.STROKE);
+        mRingPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mRingPaint.setStyle(Paint.Style.STROKE);
+        mRingPaint.setStrokeCap(Paint.Cap.ROUND);
+
+        applyStyle(SaundStyle.obtain(context, attrs, defStyle));
+    }
+
+    /**
+     * Applies a parsed style to this widget, see
+     * {@link SaundProgressBar#applyStyle(SaundStyle)}. This includes the ring
+     * attributes.
+     *
+     * @param style
+     */
+    public void applyStyle(SaundStyle style) {
+        mTextPaint = style.getTextPaint();
+        mTextPaintShared = true;
+        mIndicator = style.newIndicator(getResources());
+        mOffset = style.getOffset();
+
+        mRingWidth = style.getRingWidth();
+        mRingColor = style.getRingColor();
+        mRingEndColor = style.getRingEndColor();
+        mStartAngle = style.getRingStartAngle();
+        mTrackPaint.setColor(style.getRingTrackColor());
+        mTrackPaint.setStrokeWidth(mRingWidth);
+        mRingPaint.setStrokeWidth(mRingWidth);
+        mRingPaint.setColor(mRingColor);
+
+        updateGeometry();
+        invalidate();
+    }
+
+    /**
+     * Sets the drawable used as a progress indicator. It is centered on the
+     * head of the arc.
+     *
+     * @param indicator
+     */
+    public void setProgressIndicator(Drawable indicator) {
+        mIndicator = indicator;
+        updateGeometry();
+        invalidate();
+    }
+
+    /**
+     * The text formatter is used for customizing the presentation of the text
+     * displayed in the middle of the ring. The default text format is X% where
+     * X is [0,100].
+     *
+     * @param formatter
+     */
+    public void setTextFormatter(SaundProgressBar.Formatter formatter) {
+        setTextFormatter(formatter, null);
+    }
+
+    /**
+     * Same as {@link #setTextFormatter(SaundProgressBar.Formatter)} but the
+     * labels are formatted on the given executor instead of the UI thread.
+     *
+     * @param formatter
+     * @param executor
+     */
+    public void setTextFormatter(SaundProgressBar.Formatter formatter, Executor executor) {
+        mLabelCache.setFormatter(formatter, executor);
+        invalidate();
+    }
+
+    /**
+     * The additional offset moves the indicator away from (positive) or
+     * towards (negative) the center of the ring.
+     *
+     * @param offset
+     */
+    public void setOffset(int offset) {
+        mOffset = offset;
+        updateGeometry();
+        invalidate();
+    }
+
+    /**
+     * Set the text color
+     *
+     * @param color
+     */
+    public void setTextColor(int color) {
+        mutableTextPaint().setColor(color);
+        invalidate();
+    }
+
+    /**
+     * Set the text size.
+     *
+     * @param size
+     */
+    public void setTextSize(float size) {
+        mutableTextPaint().setTextSize(size);
+        invalidate();
+    }
+
+    /**
+     * Set the alignment of the text.
+     *
+     * @param align
+     */
+    public void setTextAlign(Align align) {
+        mutableTextPaint().setTextAlign(align);
+        invalidate();
+    }
+
+    /**
+     * Set the paint object used to draw the text on to the canvas.
+     *
+     * @param paint
+     */
+    public void setPaint(TextPaint paint) {
+        mTextPaint = paint;
+        mTextPaintShared = false;
+        invalidate();
+    }
+
+    /**
+     * Set the width of the ring and its track.
+     *
+     * @param width
+     */
+    public void setRingWidth(float width) {
+        mRingWidth = width;
+        mTrackPaint.setStrokeWidth(width);
+        mRingPaint.setStrokeWidth(width);
+        updateGeometry();
+        invalidate();
+    }
+
+    /**
+     * Set the color of the ring. The ring is drawn with a sweep gradient if
+     * the start and end colors differ.
+     *
+     * @param startColor
+     * @param endColor
+     */
+    public void setRingColors(int startColor, int endColor) {
+        mRingColor = startColor;
+        mRingEndColor = endColor;
+        mRingPaint.setColor(startColor);
+        updateGeometry();
+        invalidate();
+    }
+
+    /**
+     * Set the color of the track behind the ring.
+     *
+     * @param color
+     */
+    public void setRingTrackColor(int color) {
+        mTrackPaint.setColor(color);
+        invalidate();
+    }
+
+    /**
+     * Set the angle in degrees at which the ring starts, 0 is three o'clock
+     * and the default of -90 is twelve o'clock.
+     *
+     * @param angle
+     */
+    public void setStartAngle(float angle) {
+        mStartAngle = angle;
+        updateGeometry();
+        invalidate();
+    }
+
+    private TextPaint mutableTextPaint() {
+        // the paint may still be the prototype of a shared style
+        if (mTextPaintShared) {
+            mTextPaint = SaundStyle.copyTextPaint(mTextPaint);
+            mTextPaintShared = false;
+        }
+        return mTextPaint;
+    }
+
+    @Override
+    protected synchronized void onMeasure(int widthMeasureSpec,
+                                          int heightMeasureSpec) {
+        // a ring has no intrinsic drawable size to measure
+        setMeasuredDimension(
+                resolveSize(mDefaultSize + getPaddingLeft() + getPaddingRight(),
+                        widthMeasureSpec),
+                resolveSize(mDefaultSize + getPaddingTop() + getPaddingBottom(),
+                        heightMeasureSpec));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateGeometry();
+    }
+
+    /**
+     * Computes the oval and the shader of the ring. This only depends on the
+     * size of the view and the ring attributes, never on the progress.
+     */
+    private void updateGeometry() {
+        // called by the ProgressBar constructor before we are initialised
+        if (mOval == null) {
+            return;
+        }
+
+        final int left = getPaddingLeft();
+        final int top = getPaddingTop();
+        final int width = getWidth() - left - getPaddingRight();
+        final int height = getHeight() - top - getPaddingBottom();
+
+        // leave room for whichever is wider, the ring or the indicator
+        float inset = mRingWidth / 2;
+        if (mIndicator != null) {
+            inset = Math.max(inset, Math.max(mIndicator.getBounds().width(),
+                    mIndicator.getBounds().height()) / 2 + mOffset);
+        }
+
+        mCenterX = left + width / 2.0f;
+        mCenterY = top + height / 2.0f;
+        mRadius = Math.max(0, Math.min(width, height) / 2.0f - inset);
+        mOval.set(mCenterX - mRadius, mCenterY - mRadius,
+                mCenterX + mRadius, mCenterY + mRadius);
+
+        if (mRingEndColor != mRingColor && mRadius > 0) {
+            SweepGradient shader = new SweepGradient(mCenterX, mCenterY,
+                    mRingColor, mRingEndColor);
+            Matrix matrix = new Matrix();
+            matrix.setRotate(mStartAngle, mCenterX, mCenterY);
+            shader.setLocalMatrix(matrix);
+            mRingPaint.setShader(shader);
+        } else {
+            mRingPaint.setShader(null);
+        }
+    }
+
+    @Override
+    protected synchronized void onDraw(Canvas canvas) {
+        if (mRadius <= 0) {
+            return;
+        }
+
+        final int progress = getProgress();
+        final int max = getMax();
+        final float sweep = max > 0 ? 360.0f * progress / max : 0;
+
+        canvas.drawCircle(mCenterX, mCenterY, mRadius, mTrackPaint);
+        if (sweep > 0) {
+            canvas.drawArc(mOval, mStartAngle, sweep, false, mRingPaint);
+        }
+
+        // the indicator sits on the head of the arc
+        if (mIndicator != null) {
+            final double angle = Math.toRadians(mStartAngle + sweep);
+            final float distance = mRadius + mOffset;
+            canvas.save();
+            canvas.translate(
+                    mCenterX + (float) Math.cos(angle) * distance
+                            - mIndicator.getBounds().width() / 2.0f,
+                    mCenterY + (float) Math.sin(angle) * distance
+                            - mIndicator.getBounds().height() / 2.0f);
+            mIndicator.draw(canvas);
+            canvas.restore();
+        }
+
+        canvas.drawText(mLabelCache.get(progress, max), mCenterX,
+                mCenterY - (mTextPaint.descent() + mTextPaint.ascent()) / 2,
+                mTextPaint);
+    }
+
+    @Override
+    public synchronized void setProgress(int progress) {
+        super.setProgress(progress);
+        invalidateProgress();
+    }
+
+    @TargetApi(Build.VERSION_CODES.N)
+    @Override
+    public void setProgress(int progress, boolean animate) {
+        // ProgressBar doesn't route this through setProgress(int)
+        super.setProgress(progress, animate);
+        invalidateProgress();
+    }
+
+    private void invalidateProgress() {
+        // while we can't be seen the progress is only applied, we are redrawn
+        // once we can be seen again
+        if (mRenderGate != null && mRenderGate.suppress()) {
+            return;
+        }
+        invalidate();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mRenderGate.setAttached(true);
+        onRenderStateChanged();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        mRenderGate.setAttached(false);
+        onRenderStateChanged();
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        onRenderStateChanged();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        onRenderStateChanged();
+    }
+
+    /**
+     * Redraws the progress applied while we were hidden as soon as we can be
+     * seen again.
+     */
+    private void onRenderStateChanged() {
+        // called by the ProgressBar constructor before we are initialised
+        if (mRenderGate == null) {
+            return;
+        }
+
+        if (mRenderGate.update()) {
+            invalidate();
+        } else if (!mRenderGate.isRendering()) {
+            mAccessibilityThrottle.cancel();
+        }
+    }
+
+    /**
+     * Sets how often the ring reports its progress to accessibility
+     * services, see {@link SaundAccessibilityPolicy}. The default is
+     * {@link SaundAccessibilityPolicy#DEFAULT}, null sends every event the
+     * platform generates.
+     *
+     * @param policy
+     */
+    public void setAccessibilityPolicy(SaundAccessibilityPolicy policy) {
+        mAccessibilityThrottle.setPolicy(policy);
+    }
+
+    public SaundAccessibilityPolicy getAccessibilityPolicy() {
+        return mAccessibilityThrottle.getPolicy();
+    }
+
+    @Override
+    public void sendAccessibilityEvent(int eventType) {
+        // ProgressBar reports progress changes as selection events, these go
+        // through the policy and are dropped while we can't be seen
+        if (eventType == AccessibilityEvent.TYPE_VIEW_SELECTED
+                && mAccessibilityThrottle != null
+                && mAccessibilityThrottle.getPolicy() != null) {
+            if (mRenderGate.isRendering()) {
+                mAccessibilityThrottle.onProgressEvent();
+            }
+            return;
+        }
+        super.sendAccessibilityEvent(eventType);
+    }
+
+    /**
+     * Returns the number of progress updates that were only recorded because
+     * the ring was detached or hidden at the time.
+     */
+    public int getSuppressedUpdateCount() {
+        return mRenderGate.getSuppressedUpdates();
+    }
+}
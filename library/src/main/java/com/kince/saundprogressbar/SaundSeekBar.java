@@ -16,20 +16,26 @@
 
 package com.kince.saundprogressbar;
 
+import android.annotation.TargetApi;
 import android.content.Context;
-import android.content.res.TypedArray;
 import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Paint.Align;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.LayerDrawable;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.v4.view.ViewCompat;
 import android.text.TextPaint;
 import android.util.AttributeSet;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
 import android.widget.ProgressBar;
 import android.widget.SeekBar;
 
+import java.util.concurrent.Executor;
+
 /**
  * An enhanced version of the ProgressBar which provides greater control over
  * how the progress bar is drawn and displayed. The motivation is to allow us to
@@ -37,15 +43,55 @@ import android.widget.SeekBar;
  * a rounded cap at the end of the progress bar and optionally show an overlay.
  * We can also present a progress indicator to show the percentage completed or
  * a more customized value by implementing the Formatter interface.
+ * <p>
+ * While it is detached, hidden or in a hidden window progress updates are
+ * applied without being drawn, the latest progress is drawn in a single frame
+ * once it can be seen again.
+ * <p>
+ * The seek bar can draw tick marks for every step and snap to them while it
+ * is dragged. The tick positions are computed once per size and max and drawn
+ * in a single batch.
  *
  * @author kince
  */
 public class SaundSeekBar extends SeekBar {
 
+    // ticks closer than this (in tick widths) would only smear the track
+    private static final int MIN_TICK_SPACING = 2;
+    private static final int MAX_LABEL_CACHE_SIZE = 256;
+
     private Drawable mIndicator;
     private int mOffset = 5;
     private TextPaint mTextPaint;
-    private Formatter mFormatter;
+    private boolean mTextPaintShared;
+    private LabelCache mLabelCache;
+    private RenderGate mRenderGate;
+    private AccessibilityThrottle mAccessibilityThrottle;
+    private ClockDriver mClockDriver;
+
+    private boolean mShowTicks;
+    private Paint mTickPaint;
+    private float mTickHeight;
+    private int mStepSize = 1;
+    private boolean mSnapToSteps;
+    private boolean mSnapping;
+    // the key increment from before snapping replaced it with the step size
+    private int mUnsnappedKeyIncrement;
+    private OnSeekBarChangeListener mOnSeekBarChangeListener;
+
+    // tick positions as drawLines() segments in track coordinates, valid for
+    // the cached width, max and track center
+    private float[] mTickPoints;
+    private int mTickPointCount;
+    private int mStepCacheWidth = -1;
+    private int mStepCacheMax = -1;
+    private float mStepCacheCenter = Float.NaN;
+
+    // set by the AbsSeekBar constructor through setThumb(), so it must not
+    // have an initializer. getThumb() only exists from API 16
+    private Drawable mThumb;
+    private Rect mThumbBounds;
+    private boolean mHidingThumb;
 
     public SaundSeekBar(Context context) {
         this(context, null);
@@ -58,54 +104,189 @@ public class SaundSeekBar extends SeekBar {
     public SaundSeekBar(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
 
-        // create a default progress bar indicator text paint used for drawing
-        // the
-        // text on to the canvas
-        mTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
-        mTextPaint.density = getResources().getDisplayMetrics().density;
-        mTextPaint.setColor(Color.WHITE);
-        mTextPaint.setTextAlign(Align.CENTER);
-        mTextPaint.setTextSize(10);
-        mTextPaint.setFakeBoldText(true);
-
-        // get the styleable attributes as defined in the xml
-        TypedArray a = context.obtainStyledAttributes(attrs,
-                R.styleable.SaundProgressBar, defStyle, 0);
-
-        if (a != null) {
-            mTextPaint.setTextSize(a.getDimension(
-                    R.styleable.SaundProgressBar_textSize, 10));
-            mTextPaint.setColor(a.getColor(
-                    R.styleable.SaundProgressBar_textColor, Color.WHITE));
-
-            int alignIndex = (a.getInt(R.styleable.SaundProgressBar_textAlign,
-                    1));
-            if (alignIndex == 0) {
-                mTextPaint.setTextAlign(Align.LEFT);
-            } else if (alignIndex == 1) {
-                mTextPaint.setTextAlign(Align.CENTER);
-            } else if (alignIndex == 2) {
-                mTextPaint.setTextAlign(Align.RIGHT);
+        mLabelCache = new LabelCache(this);
+        mRenderGate = new RenderGate(this);
+        mAccessibilityThrottle = new AccessibilityThrottle(this,
+                new AccessibilityThrottle.Host() {
+                    @Override
+                    public int getPercent() {
+                        final int max = getMax();
+                        return max > 0 ? Math.round(100.0f * getProgress() / max) : 0;
+                    }
+
+                    @Override
+                    public void sendProgressEvent() {
+                        SaundSeekBar.super.sendAccessibilityEvent(
+                                AccessibilityEvent.TYPE_VIEW_SELECTED);
+                    }
+                }, SaundAccessibilityPolicy.DEFAULT);
+        mClockDriver = new ClockDriver(this, mRenderGate, new ClockDriver.Host() {
+            @Override
+            public void setClockProgress(int progress) {
+                SaundSeekBar.super.setProgress(progress);
+                invalidateProgress();
+            }
+        });
+        mTickPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+        // snapping needs to see every change made by the user first
+        super.setOnSeekBarChangeListener(new OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                // the user took over from the time source
+                if (fromUser) {
+                    mClockDriver.cancel();
+                }
+
+                if (fromUser && mSnapToSteps && mStepSize > 1) {
+                    final int snapped = snap(progress);
+                    if (snapped != progress) {
+                        // calls us back with the snapped value
+                        mSnapping = true;
+                        setProgress(snapped);
+                        mSnapping = false;
+                        return;
+                    }
+                }
+
+                if (mOnSeekBarChangeListener != null) {
+                    mOnSeekBarChangeListener.onProgressChanged(seekBar, progress,
+                            fromUser || mSnapping);
+                }
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+                clearTimeSource();
+                if (mOnSeekBarChangeListener != null) {
+                    mOnSeekBarChangeListener.onStartTrackingTouch(seekBar);
+                }
             }
 
-            int textStyle = (a
-                    .getInt(R.styleable.SaundProgressBar_textStyle, 1));
-            if (textStyle == 0) {
-                mTextPaint.setTextSkewX(0.0f);
-                mTextPaint.setFakeBoldText(false);
-            } else if (textStyle == 1) {
-                mTextPaint.setTextSkewX(0.0f);
-                mTextPaint.setFakeBoldText(true);
-            } else if (textStyle == 2) {
-                mTextPaint.setTextSkewX(-0.25f);
-                mTextPaint.setFakeBoldText(false);
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+                if (mOnSeekBarChangeListener != null) {
+                    mOnSeekBarChangeListener.onStopTrackingTouch(seekBar);
+                }
             }
+        });
+
+        applyStyle(SaundStyle.obtain(context, attrs, defStyle));
+    }
+
+    @Override
+    public void setOnSeekBarChangeListener(OnSeekBarChangeListener l) {
+        mOnSeekBarChangeListener = l;
+    }
+
+    /**
+     * Applies a parsed style to this widget. The text paint is shared with
+     * every other widget using the same style until one of the text setters
+     * is called, the indicator shares its decoded state.
+     *
+     * @param style
+     */
+    public void applyStyle(SaundStyle style) {
+        mTextPaint = style.getTextPaint();
+        mTextPaintShared = true;
+        mIndicator = style.newIndicator(getResources());
+        mOffset = style.getOffset();
+        mShowTicks = style.isShowTicks();
+        mTickPaint.setColor(style.getTickColor());
+        mTickPaint.setStrokeWidth(style.getTickWidth());
+        mTickHeight = style.getTickHeight();
+        setStepSize(style.getStepSize());
+        setSnapToSteps(style.isSnapToSteps());
+        invalidate();
+    }
+
+    /**
+     * Shows a tick mark for every step.
+     *
+     * @param show
+     */
+    public void setShowTicks(boolean show) {
+        mShowTicks = show;
+        invalidate();
+    }
+
+    /**
+     * Set the color of the tick marks.
+     *
+     * @param color
+     */
+    public void setTickColor(int color) {
+        mTickPaint.setColor(color);
+        invalidate();
+    }
+
+    /**
+     * Sets the distance between two steps in progress units. Tick marks are
+     * drawn at every step and at the max.
+     *
+     * @param stepSize
+     */
+    public void setStepSize(int stepSize) {
+        mStepSize = Math.max(1, stepSize);
+        mStepCacheMax = -1;
+        if (mSnapToSteps) {
+            setKeyProgressIncrement(mStepSize);
+        }
+        invalidate();
+    }
+
+    /**
+     * Makes the seek bar snap to the nearest step while it is dragged. The
+     * labels of all steps are cached, so dragging doesn't format anything
+     * once every step has been shown.
+     *
+     * @param snap
+     */
+    public void setSnapToSteps(boolean snap) {
+        if (snap == mSnapToSteps) {
+            return;
+        }
+        mSnapToSteps = snap;
+        mStepCacheMax = -1;
+        if (snap) {
+            mUnsnappedKeyIncrement = getKeyProgressIncrement();
+            setKeyProgressIncrement(mStepSize);
+        } else if (getKeyProgressIncrement() == mStepSize) {
+            // unless the app has set an increment of its own since
+            setKeyProgressIncrement(mUnsnappedKeyIncrement);
+        }
+    }
 
-            mIndicator = a.getDrawable(R.styleable.SaundProgressBar_progressIndicator);
-            mOffset = (int) a.getDimension(R.styleable.SaundProgressBar_offset, 0);
+    @Override
+    public synchronized void setMax(int max) {
+        super.setMax(max);
+        // AbsSeekBar replaces small key increments when the max grows
+        if (mSnapToSteps) {
+            setKeyProgressIncrement(mStepSize);
+        }
+    }
+
+    @Override
+    public void setThumb(Drawable thumb) {
+        mThumb = thumb;
+        super.setThumb(thumb);
+    }
 
-            a.recycle();
+    @Override
+    public void invalidateDrawable(Drawable dr) {
+        // hiding the thumb while the track is drawn must not schedule a frame
+        if (mHidingThumb && dr == mThumb) {
+            return;
         }
+        super.invalidateDrawable(dr);
+    }
+
+    private int snap(int progress) {
+        final int max = getMax();
+        final int snapped = Math.round(progress / (float) mStepSize) * mStepSize;
+        // the max is always a valid step even if it isn't a multiple
+        return snapped > max || max - progress < Math.abs(snapped - progress)
+                ? max : snapped;
     }
 
     /**
@@ -122,11 +303,39 @@ public class SaundSeekBar extends SeekBar {
      * displayed in the progress indicator. The default text format is X% where
      * X is [0,100]. To use the formatter you must provide an object which
      * implements the {@linkplain SaundSeekBar.Formatter} interface.
+     * <p>
+     * Formatted labels are memoized per progress value, so the formatter is
+     * only called when the progress changes to a value that is not cached.
      *
      * @param formatter
      */
     public void setTextFormatter(Formatter formatter) {
-        mFormatter = formatter;
+        setTextFormatter(formatter, null);
+    }
+
+    /**
+     * Same as {@link #setTextFormatter(Formatter)} but the labels are formatted
+     * on the given executor instead of the UI thread. A new label is swapped in
+     * on the next frame after it is ready, the last label is shown until then.
+     * Passing a null executor formats on the UI thread.
+     *
+     * @param formatter
+     * @param executor
+     */
+    public void setTextFormatter(Formatter formatter, Executor executor) {
+        mLabelCache.setFormatter(formatter, executor);
+        invalidate();
+    }
+
+    /**
+     * Sets how many formatted labels are kept around. The default is enough for
+     * a bar that moves forward, a bar that is scrubbed back and forth over
+     * many values benefits from a larger cache.
+     *
+     * @param size
+     */
+    public void setLabelCacheSize(int size) {
+        mLabelCache.ensureCapacity(size);
     }
 
     /**
@@ -144,7 +353,7 @@ public class SaundSeekBar extends SeekBar {
      * @param color
      */
     public void setTextColor(int color) {
-        mTextPaint.setColor(color);
+        mutableTextPaint().setColor(color);
     }
 
     /**
@@ -153,7 +362,7 @@ public class SaundSeekBar extends SeekBar {
      * @param size
      */
     public void setTextSize(float size) {
-        mTextPaint.setTextSize(size);
+        mutableTextPaint().setTextSize(size);
     }
 
     /**
@@ -162,7 +371,7 @@ public class SaundSeekBar extends SeekBar {
      * @param bold
      */
     public void setTextBold(boolean bold) {
-        mTextPaint.setFakeBoldText(true);
+        mutableTextPaint().setFakeBoldText(true);
     }
 
     /**
@@ -171,7 +380,7 @@ public class SaundSeekBar extends SeekBar {
      * @param align
      */
     public void setTextAlign(Align align) {
-        mTextPaint.setTextAlign(align);
+        mutableTextPaint().setTextAlign(align);
     }
 
     /**
@@ -181,6 +390,16 @@ public class SaundSeekBar extends SeekBar {
      */
     public void setPaint(TextPaint paint) {
         mTextPaint = paint;
+        mTextPaintShared = false;
+    }
+
+    private TextPaint mutableTextPaint() {
+        // the paint may still be the prototype of a shared style
+        if (mTextPaintShared) {
+            mTextPaint = SaundStyle.copyTextPaint(mTextPaint);
+            mTextPaintShared = false;
+        }
+        return mTextPaint;
     }
 
     @Override
@@ -261,7 +480,12 @@ public class SaundSeekBar extends SeekBar {
         // update the size of the progress bar and overlay
         updateProgressBar();
 
-        super.onDraw(canvas);
+        updateSteps(progressDrawable);
+        if (mShowTicks && mTickPointCount > 0 && !isIndeterminate()) {
+            drawTrackAndTicks(canvas, progressDrawable);
+        } else {
+            super.onDraw(canvas);
+        }
 
         // Draw the indicator to match the far right position of the progress
         // bar
@@ -295,26 +519,296 @@ public class SaundSeekBar extends SeekBar {
 
             mIndicator.draw(canvas);
 
-            canvas.drawText(
-                    mFormatter != null ? mFormatter.getText(getProgress())
-                            : Math.round(getScale(getProgress()) * 100.0f)
-                            + "%", getIndicatorWidth() / 2,
-                    getIndicatorHeight() / 2 + 1, mTextPaint);
+            canvas.drawText(mLabelCache.get(getProgress(), getMax()),
+                    getIndicatorWidth() / 2, getIndicatorHeight() / 2 + 1,
+                    mTextPaint);
 
             // restore canvas to original
             canvas.restore();
         }
     }
 
+    /**
+     * Draws the tick marks between the track and the thumb. AbsSeekBar draws
+     * both in one go, so the track and the thumb are drawn here the same way
+     * ProgressBar and AbsSeekBar draw them.
+     * <p>
+     * ProgressBar may mirror the track for right to left layouts, which can't
+     * be told from outside. There the thumb is given empty bounds while
+     * AbsSeekBar draws the track and is then drawn on top of the ticks.
+     */
+    private void drawTrackAndTicks(Canvas canvas, Drawable track) {
+        final Drawable thumb = mThumb;
+        if (ViewCompat.getLayoutDirection(this) == ViewCompat.LAYOUT_DIRECTION_RTL) {
+            drawMirroredTrackAndTicks(canvas, thumb);
+            return;
+        }
+
+        canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        if (track != null) {
+            track.draw(canvas);
+        }
+        canvas.drawLines(mTickPoints, 0, mTickPointCount, mTickPaint);
+        canvas.restore();
+
+        if (thumb != null) {
+            canvas.save();
+            canvas.translate(getPaddingLeft() - getThumbOffset(), getPaddingTop());
+            thumb.draw(canvas);
+            canvas.restore();
+        }
+    }
+
+    private void drawMirroredTrackAndTicks(Canvas canvas, Drawable thumb) {
+        if (thumb != null) {
+            if (mThumbBounds == null) {
+                mThumbBounds = new Rect();
+            }
+            thumb.copyBounds(mThumbBounds);
+
+            mHidingThumb = true;
+            thumb.setBounds(0, 0, 0, 0);
+        }
+        try {
+            super.onDraw(canvas);
+        } finally {
+            if (thumb != null) {
+                thumb.setBounds(mThumbBounds);
+                mHidingThumb = false;
+            }
+        }
+
+        canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        canvas.drawLines(mTickPoints, 0, mTickPointCount, mTickPaint);
+        canvas.restore();
+
+        if (thumb != null) {
+            canvas.save();
+            canvas.translate(getPaddingLeft() - getThumbOffset(), getPaddingTop());
+            thumb.draw(canvas);
+            canvas.restore();
+        }
+    }
+
+    /**
+     * Recomputes the tick positions and the label cache size, but only when
+     * the size, the max or the position of the track changed since the last
+     * frame.
+     */
+    private void updateSteps(Drawable track) {
+        final int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        final int max = getMax();
+        // the ticks are centered on the track, which sits below the indicator
+        final float center = track != null ? trackBounds(track).exactCenterY()
+                : (getHeight() - getPaddingTop() - getPaddingBottom()) / 2.0f;
+        if (width == mStepCacheWidth && max == mStepCacheMax && center == mStepCacheCenter) {
+            return;
+        }
+        mStepCacheWidth = width;
+        mStepCacheMax = max;
+        mStepCacheCenter = center;
+
+        final int steps = max > 0 ? (max + mStepSize - 1) / mStepSize : 0;
+        if (mSnapToSteps) {
+            mLabelCache.ensureCapacity(Math.min(steps + 1, MAX_LABEL_CACHE_SIZE));
+        }
+
+        mTickPointCount = 0;
+        if (steps == 0 || width / (float) steps
+                < MIN_TICK_SPACING * Math.max(1, mTickPaint.getStrokeWidth())) {
+            return;
+        }
+
+        final int count = (steps + 1) * 4;
+        if (mTickPoints == null || mTickPoints.length < count) {
+            mTickPoints = new float[count];
+        }
+
+        // the thumb travels across the whole track, like the platform's own
+        // tick marks these sit on the thumb positions of every step
+        final float top = center - mTickHeight / 2;
+        final float bottom = center + mTickHeight / 2;
+        for (int i = 0; i <= steps; i++) {
+            final float x = width * Math.min(i * mStepSize, max) / (float) max;
+            mTickPoints[mTickPointCount++] = x;
+            mTickPoints[mTickPointCount++] = top;
+            mTickPoints[mTickPointCount++] = x;
+            mTickPoints[mTickPointCount++] = bottom;
+        }
+    }
+
+    private static Rect trackBounds(Drawable track) {
+        // onDraw moves the layers below the indicator, not the layer drawable
+        if (track instanceof LayerDrawable) {
+            LayerDrawable d = (LayerDrawable) track;
+            if (d.getNumberOfLayers() > 0) {
+                return d.getDrawable(0).getBounds();
+            }
+        }
+        return track.getBounds();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mStepCacheWidth = -1;
+    }
+
     @Override
     public synchronized void setProgress(int progress) {
+        clearClockOnUpdate();
         super.setProgress(progress);
+        invalidateProgress();
+    }
+
+    @TargetApi(Build.VERSION_CODES.N)
+    @Override
+    public void setProgress(int progress, boolean animate) {
+        // ProgressBar doesn't route this through setProgress(int)
+        clearClockOnUpdate();
+        super.setProgress(progress, animate);
+        invalidateProgress();
+    }
+
+    private void clearClockOnUpdate() {
+        // an explicit progress replaces the time source
+        if (mClockDriver != null) {
+            mClockDriver.cancel();
+        }
+    }
+
+    private void invalidateProgress() {
+        // while we can't be seen the progress is only applied, we are redrawn
+        // once we can be seen again
+        if (mRenderGate != null && mRenderGate.suppress()) {
+            return;
+        }
 
         // the setProgress super will not change the details of the progress bar
         // anymore so we need to force an update to redraw the progress bar
         invalidate();
     }
 
+    @Override
+    public synchronized int getProgress() {
+        if (mClockDriver != null && mClockDriver.isBound()) {
+            return mClockDriver.progress();
+        }
+        return super.getProgress();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mRenderGate.setAttached(true);
+        onRenderStateChanged();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        mRenderGate.setAttached(false);
+        onRenderStateChanged();
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        onRenderStateChanged();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        onRenderStateChanged();
+    }
+
+    /**
+     * Redraws the progress applied while we were hidden as soon as we can be
+     * seen again.
+     */
+    private void onRenderStateChanged() {
+        // called by the SeekBar constructor before we are initialised
+        if (mRenderGate == null) {
+            return;
+        }
+
+        if (mRenderGate.update()) {
+            mClockDriver.resume();
+            invalidate();
+        } else if (!mRenderGate.isRendering()) {
+            mClockDriver.pause();
+            mAccessibilityThrottle.cancel();
+        }
+    }
+
+    /**
+     * Binds the seek bar to a time source, e.g. the playback position of a
+     * media player. The seek bar then advances by itself between two calls,
+     * but only redraws while it can be seen and only when the extrapolated
+     * progress moves it by at least a pixel. Call again on seek, pause (a rate
+     * of 0) or rate change. Any call to {@link #setProgress(int)} unbinds it.
+     *
+     * @param position  the progress at the given timestamp
+     * @param rate      progress units per millisecond, e.g. 1 if the max is
+     *                  the duration in milliseconds and playback runs at
+     *                  normal speed
+     * @param timestamp the {@link SystemClock#uptimeMillis()} at which the
+     *                  position was sampled
+     */
+    public void setTimeSource(long position, float rate, long timestamp) {
+        mClockDriver.set(position, rate, timestamp);
+    }
+
+    /**
+     * Unbinds the seek bar from its time source, it keeps the progress it
+     * had reached.
+     */
+    public void clearTimeSource() {
+        mClockDriver.clear();
+    }
+
+    /**
+     * Sets how often the seek bar reports its progress to accessibility
+     * services, see {@link SaundAccessibilityPolicy}. The default is
+     * {@link SaundAccessibilityPolicy#DEFAULT}, null sends every event the
+     * platform generates.
+     *
+     * @param policy
+     */
+    public void setAccessibilityPolicy(SaundAccessibilityPolicy policy) {
+        mAccessibilityThrottle.setPolicy(policy);
+    }
+
+    public SaundAccessibilityPolicy getAccessibilityPolicy() {
+        return mAccessibilityThrottle.getPolicy();
+    }
+
+    @Override
+    public void sendAccessibilityEvent(int eventType) {
+        // ProgressBar reports progress changes as selection events, these go
+        // through the policy and are dropped while we can't be seen
+        if (eventType == AccessibilityEvent.TYPE_VIEW_SELECTED
+                && mAccessibilityThrottle != null
+                && mAccessibilityThrottle.getPolicy() != null) {
+            if (mRenderGate.isRendering()) {
+                mAccessibilityThrottle.onProgressEvent();
+            }
+            return;
+        }
+        super.sendAccessibilityEvent(eventType);
+    }
+
+    /**
+     * Returns the number of progress updates that were only recorded because
+     * the seek bar was detached or hidden at the time.
+     */
+    public int getSuppressedUpdateCount() {
+        return mRenderGate.getSuppressedUpdates();
+    }
+
     private float getScale(int progress) {
         float scale = getMax() > 0 ? (float) progress / (float) getMax() : 0;
         return scale;
@@ -377,12 +871,13 @@ public class SaundSeekBar extends SeekBar {
     /**
      * You must implement this interface if you wish to present a custom
      * formatted text to be used by the Progress Indicator. The default format
-     * is X% where X [0,100]
+     * is X% where X [0,100]. It shares its contract with
+     * {@link SaundProgressBar.Formatter} so one implementation can serve both
+     * widgets.
      *
      * @author jsaund
      */
-    public interface Formatter {
-        public String getText(int progress);
+    public interface Formatter extends SaundProgressBar.Formatter {
     }
 
 }
\ No newline at end of file
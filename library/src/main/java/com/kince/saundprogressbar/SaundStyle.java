@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2018 kince
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kince.saundprogressbar;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Paint.Align;
+import android.graphics.drawable.Drawable;
+import android.support.v4.util.LongSparseArray;
+import android.text.TextPaint;
+import android.util.AttributeSet;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The parsed form of the SaundProgressBar, SaundSeekBar and
+ * SaundRingProgressBar styleable attributes. Parsing the
+ * attributes, building the text paint and decoding the progress indicator is
+ * done once per theme and style resource, every widget inflated with the same
+ * style afterwards is initialised from the cached prototype. This matters in
+ * lists where the same row layout is inflated over and over again.
+ * <p>
+ * A style that was resolved from attributes which are set inline on the view
+ * tag can not be shared and is never cached.
+ *
+ * @author kince
+ */
+public final class SaundStyle {
+
+    static final int DEFAULT_INDETERMINATE_FRAME_RATE = 30;
+    static final int DEFAULT_TICK_COLOR = 0x80ffffff;
+    static final float DEFAULT_RING_START_ANGLE = -90.0f;
+
+    private static final Map<Resources.Theme, LongSparseArray<SaundStyle>> sCache =
+            new WeakHashMap<>();
+
+    private final TextPaint mTextPaint;
+    private final Drawable.ConstantState mIndicatorState;
+    private final Drawable mIndicator;
+    private final int mOffset;
+    private final boolean mSaundIndeterminate;
+    private final int mIndeterminateFrameRate;
+
+    // seek bar attributes, only assigned while the style is being parsed
+    private boolean mShowTicks;
+    private int mTickColor;
+    private float mTickWidth;
+    private float mTickHeight;
+    private int mStepSize;
+    private boolean mSnapToSteps;
+
+    // ring attributes, only assigned while the style is being parsed
+    private float mRingWidth;
+    private int mRingColor;
+    private int mRingEndColor;
+    private int mRingTrackColor;
+    private float mRingStartAngle;
+
+    private SaundStyle(TextPaint textPaint, Drawable indicator, int offset,
+                       boolean saundIndeterminate, int indeterminateFrameRate) {
+        mTextPaint = textPaint;
+        mIndicator = indicator;
+        mIndicatorState = indicator != null ? indicator.getConstantState() : null;
+        mOffset = offset;
+        mSaundIndeterminate = saundIndeterminate;
+        mIndeterminateFrameRate = indeterminateFrameRate;
+    }
+
+    /**
+     * Returns the style described by the given style resource, resolved
+     * against the theme of the context. The result is cached per theme.
+     *
+     * @param context
+     * @param styleRes
+     */
+    public static SaundStyle obtain(Context context, int styleRes) {
+        return obtain(context, null, 0, styleRes);
+    }
+
+    /**
+     * Returns the style for a widget inflated with the given attributes. When
+     * none of the SaundProgressBar attributes are set inline the result only
+     * depends on the theme, the style attribute and the default style, so it
+     * is taken from or added to the cache.
+     *
+     * @param context
+     * @param attrs
+     * @param defStyle
+     */
+    public static SaundStyle obtain(Context context, AttributeSet attrs, int defStyle) {
+        return obtain(context, attrs, defStyle, 0);
+    }
+
+    private static SaundStyle obtain(Context context, AttributeSet attrs,
+                                     int defStyleAttr, int defStyleRes) {
+        if (hasInlineAttributes(attrs)) {
+            return parse(context, attrs, defStyleAttr, defStyleRes);
+        }
+
+        final Resources.Theme theme = context.getTheme();
+        final int styleRes = attrs != null && attrs.getStyleAttribute() != 0
+                ? attrs.getStyleAttribute() : defStyleRes;
+        final long key = ((long) styleRes << 32) | (defStyleAttr & 0xffffffffL);
+
+        synchronized (sCache) {
+            LongSparseArray<SaundStyle> styles = sCache.get(theme);
+            if (styles == null) {
+                styles = new LongSparseArray<>();
+                sCache.put(theme, styles);
+            }
+
+            SaundStyle style = styles.get(key);
+            if (style == null) {
+                style = parse(context, attrs, defStyleAttr, defStyleRes);
+                if (style.isShareable()) {
+                    styles.put(key, style);
+                }
+            }
+            return style;
+        }
+    }
+
+    /**
+     * Drops every cached style, for example after the theme of a context has
+     * been changed with {@link Resources.Theme#applyStyle(int, boolean)}.
+     */
+    public static void clearCache() {
+        synchronized (sCache) {
+            sCache.clear();
+        }
+    }
+
+    private static boolean hasInlineAttributes(AttributeSet attrs) {
+        if (attrs == null) {
+            return false;
+        }
+
+        for (int i = 0; i < attrs.getAttributeCount(); i++) {
+            final int name = attrs.getAttributeNameResource(i);
+            for (int attr : R.styleable.SaundProgressBar) {
+                if (attr == name) {
+                    return true;
+                }
+            }
+            for (int attr : R.styleable.SaundSeekBar) {
+                if (attr == name) {
+                    return true;
+                }
+            }
+            for (int attr : R.styleable.SaundRingProgressBar) {
+                if (attr == name) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static SaundStyle parse(Context context, AttributeSet attrs,
+                                    int defStyleAttr, int defStyleRes) {
+        // create a default progress bar indicator text paint used for drawing
+        // the text on to the canvas
+        TextPaint textPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        textPaint.density = context.getResources().getDisplayMetrics().density;
+        textPaint.setColor(Color.WHITE);
+        textPaint.setTextAlign(Align.CENTER);
+        textPaint.setTextSize(10);
+        textPaint.setFakeBoldText(true);
+
+        // get the styleable attributes as defined in the xml
+        TypedArray a = context.obtainStyledAttributes(attrs,
+                R.styleable.SaundProgressBar, defStyleAttr, defStyleRes);
+
+        textPaint.setTextSize(a.getDimension(
+                R.styleable.SaundProgressBar_textSize, 10));
+        textPaint.setColor(a.getColor(
+                R.styleable.SaundProgressBar_textColor, Color.WHITE));
+
+        int alignIndex = (a.getInt(R.styleable.SaundProgressBar_textAlign,
+                1));
+        if (alignIndex == 0) {
+            textPaint.setTextAlign(Align.LEFT);
+        } else if (alignIndex == 1) {
+            textPaint.setTextAlign(Align.CENTER);
+        } else if (alignIndex == 2) {
+            textPaint.setTextAlign(Align.RIGHT);
+        }
+
+        int textStyle = (a
+                .getInt(R.styleable.SaundProgressBar_textStyle, 1));
+        if (textStyle == 0) {
+            textPaint.setTextSkewX(0.0f);
+            textPaint.setFakeBoldText(false);
+        } else if (textStyle == 1) {
+            textPaint.setTextSkewX(0.0f);
+            textPaint.setFakeBoldText(true);
+        } else if (textStyle == 2) {
+            textPaint.setTextSkewX(-0.25f);
+            textPaint.setFakeBoldText(false);
+        }
+
+        Drawable indicator = a.getDrawable(R.styleable.SaundProgressBar_progressIndicator);
+        int offset = (int) a.getDimension(R.styleable.SaundProgressBar_offset, 0);
+        boolean saundIndeterminate = a.getInt(
+                R.styleable.SaundProgressBar_indeterminateMode, 0) == 1;
+        int indeterminateFrameRate = a.getInt(
+                R.styleable.SaundProgressBar_indeterminateFrameRate,
+                DEFAULT_INDETERMINATE_FRAME_RATE);
+
+        a.recycle();
+
+        SaundStyle style = new SaundStyle(textPaint, indicator, offset,
+                saundIndeterminate, indeterminateFrameRate);
+        style.parseSeekBar(context, attrs, defStyleAttr, defStyleRes);
+        style.parseRing(context, attrs, defStyleAttr, defStyleRes);
+        return style;
+    }
+
+    private void parseSeekBar(Context context, AttributeSet attrs,
+                              int defStyleAttr, int defStyleRes) {
+        final Resources res = context.getResources();
+        TypedArray a = context.obtainStyledAttributes(attrs,
+                R.styleable.SaundSeekBar, defStyleAttr, defStyleRes);
+
+        mShowTicks = a.getBoolean(R.styleable.SaundSeekBar_showTicks, false);
+        mTickColor = a.getColor(R.styleable.SaundSeekBar_tickColor,
+                DEFAULT_TICK_COLOR);
+        mTickWidth = a.getDimension(R.styleable.SaundSeekBar_tickWidth,
+                res.getDimension(R.dimen.saund_tick_width));
+        mTickHeight = a.getDimension(R.styleable.SaundSeekBar_tickHeight,
+                res.getDimension(R.dimen.saund_tick_height));
+        mStepSize = Math.max(1, a.getInt(R.styleable.SaundSeekBar_stepSize, 1));
+        mSnapToSteps = a.getBoolean(R.styleable.SaundSeekBar_snapToSteps, false);
+
+        a.recycle();
+    }
+
+    private void parseRing(Context context, AttributeSet attrs,
+                           int defStyleAttr, int defStyleRes) {
+        TypedArray a = context.obtainStyledAttributes(attrs,
+                R.styleable.SaundRingProgressBar, defStyleAttr, defStyleRes);
+
+        mRingWidth = a.getDimension(R.styleable.SaundRingProgressBar_ringWidth,
+                context.getResources().getDimension(R.dimen.saund_ring_width));
+        mRingColor = a.getColor(R.styleable.SaundRingProgressBar_ringColor,
+                Color.WHITE);
+        mRingEndColor = a.getColor(R.styleable.SaundRingProgressBar_ringEndColor,
+                mRingColor);
+        mRingTrackColor = a.getColor(
+                R.styleable.SaundRingProgressBar_ringTrackColor, Color.GRAY);
+        mRingStartAngle = a.getFloat(R.styleable.SaundRingProgressBar_ringStartAngle,
+                DEFAULT_RING_START_ANGLE);
+
+        a.recycle();
+    }
+
+    /**
+     * A style can only be cached if every widget can get its own copy of the
+     * indicator, which requires the indicator to expose a constant state.
+     */
+    private boolean isShareable() {
+        return mIndicator == null || mIndicatorState != null;
+    }
+
+    /**
+     * The text paint shared by every widget using this style. It must not be
+     * modified, widgets copy it before changing any of its properties.
+     */
+    TextPaint getTextPaint() {
+        return mTextPaint;
+    }
+
+    /**
+     * Returns a new indicator drawable which shares its decoded state with
+     * every other indicator created from this style, or null if the style has
+     * no indicator.
+     */
+    Drawable newIndicator(Resources res) {
+        if (mIndicatorState != null) {
+            return mIndicatorState.newDrawable(res);
+        }
+        // drawables without a constant state are never cached, so the style
+        // and the indicator we parsed belong to a single widget
+        return mIndicator;
+    }
+
+    int getOffset() {
+        return mOffset;
+    }
+
+    boolean isSaundIndeterminate() {
+        return mSaundIndeterminate;
+    }
+
+    int getIndeterminateFrameRate() {
+        return mIndeterminateFrameRate;
+    }
+
+    boolean isShowTicks() {
+        return mShowTicks;
+    }
+
+    int getTickColor() {
+        return mTickColor;
+    }
+
+    float getTickWidth() {
+        return mTickWidth;
+    }
+
+    float getTickHeight() {
+        return mTickHeight;
+    }
+
+    int getStepSize() {
+        return mStepSize;
+    }
+
+    boolean isSnapToSteps() {
+        return mSnapToSteps;
+    }
+
+    float getRingWidth() {
+        return mRingWidth;
+    }
+
+    int getRingColor() {
+        return mRingColor;
+    }
+
+    int getRingEndColor() {
+        return mRingEndColor;
+    }
+
+    int getRingTrackColor() {
+        return mRingTrackColor;
+    }
+
+    float getRingStartAngle() {
+        return mRingStartAngle;
+    }
+
+    /**
+     * Returns a copy of the given paint which can be modified freely.
+     */
+    static TextPaint copyTextPaint(TextPaint paint) {
+        TextPaint copy = new TextPaint();
+        copy.set(paint);
+        return copy;
+    }
+}
@@ -0,0 +1,155 @@
+package com.kince.saundprogressbar;
+
+import android.app.Activity;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that AccessibilityThrottle sends the first event right away,
+ * coalesces the events of an interval into one that reports the latest
+ * progress and only sends what the policy considers worth it.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29)
+public class AccessibilityThrottleTest {
+
+    private View mView;
+    private RecordingHost mHost;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.buildActivity(Activity.class).setup().get();
+        // the delayed event is posted through the view, which needs a window
+        mView = new View(activity);
+        activity.setContentView(mView);
+        mHost = new RecordingHost();
+    }
+
+    @Test
+    public void firstEventIsSentRightAway() {
+        AccessibilityThrottle throttle = throttle(500, 1, 0);
+
+        progress(throttle, 0);
+        assertEquals(Arrays.asList(0), mHost.mSent);
+    }
+
+    @Test
+    public void eventsWithinIntervalAreCoalesced() {
+        AccessibilityThrottle throttle = throttle(500, 1, 0);
+        progress(throttle, 0);
+
+        progress(throttle, 1);
+        progress(throttle, 2);
+        progress(throttle, 3);
+        assertEquals(Arrays.asList(0), mHost.mSent);
+
+        ShadowLooper.idleMainLooper(499, TimeUnit.MILLISECONDS);
+        assertEquals(Arrays.asList(0), mHost.mSent);
+
+        // a single event with the latest progress
+        ShadowLooper.idleMainLooper(1, TimeUnit.MILLISECONDS);
+        assertEquals(Arrays.asList(0, 3), mHost.mSent);
+
+        ShadowLooper.idleMainLooper(1000, TimeUnit.MILLISECONDS);
+        assertEquals(Arrays.asList(0, 3), mHost.mSent);
+    }
+
+    @Test
+    public void eventAfterIntervalIsSentRightAway() {
+        AccessibilityThrottle throttle = throttle(500, 1, 0);
+        progress(throttle, 0);
+
+        ShadowLooper.idleMainLooper(500, TimeUnit.MILLISECONDS);
+        progress(throttle, 1);
+        assertEquals(Arrays.asList(0, 1), mHost.mSent);
+    }
+
+    @Test
+    public void smallChangesAreDropped() {
+        AccessibilityThrottle throttle = throttle(0, 5, 0);
+        progress(throttle, 10);
+
+        progress(throttle, 12);
+        progress(throttle, 14);
+        progress(throttle, 15);
+        assertEquals(Arrays.asList(10, 15), mHost.mSent);
+    }
+
+    @Test
+    public void onlyMilestonesAreSent() {
+        AccessibilityThrottle throttle = throttle(0, 1, 25);
+        for (int percent = 0; percent <= 100; percent++) {
+            progress(throttle, percent);
+        }
+
+        assertEquals(Arrays.asList(0, 25, 50, 75, 100), mHost.mSent);
+    }
+
+    @Test
+    public void delayedEventIsDroppedIfProgressWentBack() {
+        AccessibilityThrottle throttle = throttle(500, 1, 0);
+        progress(throttle, 40);
+
+        progress(throttle, 41);
+        mHost.mPercent = 40;
+        ShadowLooper.idleMainLooper(500, TimeUnit.MILLISECONDS);
+
+        assertEquals(Arrays.asList(40), mHost.mSent);
+    }
+
+    @Test
+    public void cancelDropsDelayedEvent() {
+        AccessibilityThrottle throttle = throttle(500, 1, 0);
+        progress(throttle, 0);
+        progress(throttle, 5);
+
+        throttle.cancel();
+        ShadowLooper.idleMainLooper(1000, TimeUnit.MILLISECONDS);
+        assertEquals(Arrays.asList(0), mHost.mSent);
+
+        // and later events still get through
+        progress(throttle, 6);
+        assertEquals(Arrays.asList(0, 6), mHost.mSent);
+    }
+
+    private AccessibilityThrottle throttle(long minInterval, int minPercentDelta,
+                                           int milestone) {
+        return new AccessibilityThrottle(mView, mHost,
+                new SaundAccessibilityPolicy(minInterval, minPercentDelta, milestone));
+    }
+
+    private void progress(AccessibilityThrottle throttle, int percent) {
+        mHost.mPercent = percent;
+        throttle.onProgressEvent();
+    }
+
+    private static final class RecordingHost implements AccessibilityThrottle.Host {
+
+        final List<Integer> mSent = new ArrayList<>();
+        int mPercent;
+
+        @Override
+        public int getPercent() {
+            return mPercent;
+        }
+
+        @Override
+        public void sendProgressEvent() {
+            mSent.add(mPercent);
+        }
+    }
+}
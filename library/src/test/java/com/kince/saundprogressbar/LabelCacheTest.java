@@ -0,0 +1,180 @@
+package com.kince.saundprogressbar;
+
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that LabelCache only formats labels it doesn't hold yet, evicts the
+ * least recently used one when it is full, and that asynchronous formatting
+ * always comes back to the main thread, even when the formatter throws.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29)
+public class LabelCacheTest {
+
+    private LabelCache mCache;
+    private CountingFormatter mFormatter;
+
+    @Before
+    public void setUp() {
+        mCache = new LabelCache(new View(RuntimeEnvironment.getApplication()));
+        mFormatter = new CountingFormatter();
+    }
+
+    @Test
+    public void get_defaultLabelIsPercent() {
+        assertEquals("0%", mCache.get(0, 200));
+        assertEquals("50%", mCache.get(100, 200));
+        assertEquals("100%", mCache.get(200, 200));
+        assertEquals("0%", mCache.get(5, 0));
+    }
+
+    @Test
+    public void get_formatsEachProgressOnce() {
+        mCache.setFormatter(mFormatter, null);
+
+        assertEquals("#1", mCache.get(1, 100));
+        assertEquals("#1", mCache.get(1, 100));
+        assertEquals("#2", mCache.get(2, 100));
+        assertEquals("#1", mCache.get(1, 100));
+
+        assertEquals(2, mFormatter.mCalls);
+    }
+
+    @Test
+    public void get_evictsLeastRecentlyUsed() {
+        mCache.setFormatter(mFormatter, null);
+        for (int i = 0; i < LabelCache.DEFAULT_CAPACITY; i++) {
+            mCache.get(i, 100);
+        }
+
+        // 0 is used again, which leaves 1 as the least recently used label
+        mCache.get(0, 100);
+        mCache.get(LabelCache.DEFAULT_CAPACITY, 100);
+        assertEquals(LabelCache.DEFAULT_CAPACITY + 1, mFormatter.mCalls);
+
+        mCache.get(0, 100);
+        assertEquals(LabelCache.DEFAULT_CAPACITY + 1, mFormatter.mCalls);
+
+        mCache.get(1, 100);
+        assertEquals(LabelCache.DEFAULT_CAPACITY + 2, mFormatter.mCalls);
+    }
+
+    @Test
+    public void get_maxChangeDropsCachedLabels() {
+        mCache.setFormatter(mFormatter, null);
+
+        mCache.get(1, 100);
+        mCache.get(1, 200);
+        assertEquals(2, mFormatter.mCalls);
+    }
+
+    @Test
+    public void ensureCapacity_keepsMoreLabels() {
+        mCache.setFormatter(mFormatter, null);
+        mCache.ensureCapacity(64);
+
+        for (int i = 0; i < 64; i++) {
+            mCache.get(i, 100);
+        }
+        for (int i = 0; i < 64; i++) {
+            mCache.get(i, 100);
+        }
+        assertEquals(64, mFormatter.mCalls);
+    }
+
+    @Test
+    public void get_async_keepsLastLabelUntilFormatted() {
+        QueueExecutor executor = new QueueExecutor();
+        mCache.setFormatter(mFormatter, executor);
+
+        assertEquals("", mCache.get(1, 100));
+        // only one label is formatted at a time
+        assertEquals("", mCache.get(2, 100));
+        assertEquals(1, executor.mTasks.size());
+
+        executor.runAll();
+        assertEquals("", mCache.get(1, 100));
+        ShadowLooper.idleMainLooper();
+
+        assertEquals("#1", mCache.get(1, 100));
+        assertEquals("#1", mCache.get(2, 100));
+        executor.runAll();
+        ShadowLooper.idleMainLooper();
+        assertEquals("#2", mCache.get(2, 100));
+    }
+
+    @Test
+    public void get_async_discardsLabelsOfPreviousFormatter() {
+        QueueExecutor executor = new QueueExecutor();
+        mCache.setFormatter(mFormatter, executor);
+        mCache.get(1, 100);
+
+        mCache.setFormatter(null, null);
+        executor.runAll();
+        ShadowLooper.idleMainLooper();
+
+        assertEquals("1%", mCache.get(1, 100));
+    }
+
+    @Test
+    public void get_async_throwingFormatterFallsBackToPercent() {
+        QueueExecutor executor = new QueueExecutor();
+        mCache.setFormatter(new SaundProgressBar.Formatter() {
+            @Override
+            public String getText(int progress) {
+                throw new IllegalStateException("no label for " + progress);
+            }
+        }, executor);
+
+        mCache.get(50, 100);
+        executor.runAll();
+        ShadowLooper.idleMainLooper();
+        assertEquals("50%", mCache.get(50, 100));
+
+        // and the next label is formatted again
+        mCache.get(60, 100);
+        assertEquals(1, executor.mTasks.size());
+    }
+
+    private static final class CountingFormatter implements SaundProgressBar.Formatter {
+
+        int mCalls;
+
+        @Override
+        public String getText(int progress) {
+            mCalls++;
+            return "#" + progress;
+        }
+    }
+
+    private static final class QueueExecutor implements Executor {
+
+        final List<Runnable> mTasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+
+        void runAll() {
+            // stands in for a worker thread, a task that throws fails the test
+            while (!mTasks.isEmpty()) {
+                mTasks.remove(0).run();
+            }
+        }
+    }
+}
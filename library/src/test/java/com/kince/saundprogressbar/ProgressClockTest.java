@@ -0,0 +1,98 @@
+package com.kince.saundprogressbar;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how ProgressClock extrapolates the progress between two samples and
+ * how long it lets a bar sleep.
+ */
+public class ProgressClockTest {
+
+    private ProgressClock mClock;
+
+    @Before
+    public void setUp() {
+        mClock = new ProgressClock();
+    }
+
+    @Test
+    public void progressAt_extrapolatesFromSample() {
+        mClock.set(100, 0.5f, 1000);
+
+        assertEquals(100, mClock.progressAt(1000, 1000));
+        assertEquals(200, mClock.progressAt(1200, 1000));
+        // a frame drawn a little before the sample doesn't jump ahead
+        assertEquals(95, mClock.progressAt(990, 1000));
+    }
+
+    @Test
+    public void progressAt_clampsToRange() {
+        mClock.set(900, 1, 0);
+        assertEquals(1000, mClock.progressAt(500, 1000));
+
+        mClock.set(100, -1, 0);
+        assertEquals(0, mClock.progressAt(500, 1000));
+    }
+
+    @Test
+    public void paused_staysPut() {
+        mClock.set(300, 0, 0);
+
+        assertTrue(mClock.isBound());
+        assertFalse(mClock.isRunning());
+        assertEquals(300, mClock.progressAt(100000, 1000));
+    }
+
+    @Test
+    public void clear_unbinds() {
+        mClock.set(300, 1, 0);
+        mClock.clear();
+
+        assertFalse(mClock.isBound());
+        assertFalse(mClock.isRunning());
+    }
+
+    @Test
+    public void isFinished_dependsOnDirection() {
+        mClock.set(0, 1, 0);
+        assertFalse(mClock.isFinished(999, 1000));
+        assertTrue(mClock.isFinished(1000, 1000));
+
+        mClock.set(0, -1, 0);
+        assertFalse(mClock.isFinished(1, 1000));
+        assertTrue(mClock.isFinished(0, 1000));
+    }
+
+    @Test
+    public void delayToNextPixel_sleepsUntilBarMoves() {
+        // 10 progress units per pixel
+        mClock.set(0, 1, 0);
+        assertEquals(10, mClock.delayToNextPixel(1000, 100));
+
+        mClock.set(0, -2, 0);
+        assertEquals(5, mClock.delayToNextPixel(1000, 100));
+    }
+
+    @Test
+    public void delayToNextPixel_isCapped() {
+        mClock.set(0, 0.0001f, 0);
+        assertEquals(1000, mClock.delayToNextPixel(1000, 100));
+
+        // without a size the bar still wakes up to notice a resize
+        mClock.set(0, 1, 0);
+        assertEquals(1000, mClock.delayToNextPixel(1000, 0));
+        assertEquals(1000, mClock.delayToNextPixel(0, 100));
+    }
+
+    @Test
+    public void pixelOf_rounds() {
+        assertEquals(0, ProgressClock.pixelOf(0, 1000, 100));
+        assertEquals(1, ProgressClock.pixelOf(5, 1000, 100));
+        assertEquals(0, ProgressClock.pixelOf(4, 1000, 100));
+        assertEquals(100, ProgressClock.pixelOf(1000, 1000, 100));
+        assertEquals(0, ProgressClock.pixelOf(10, 0, 100));
+    }
+}
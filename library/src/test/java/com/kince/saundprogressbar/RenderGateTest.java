@@ -0,0 +1,196 @@
+package com.kince.saundprogressbar;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.ProgressBar;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ReflectionHelpers;
+import org.robolectric.util.ReflectionHelpers.ClassParameter;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the widgets keep their progress current while they can't be
+ * seen, only skipping the redraw, so every ProgressBar method, including the
+ * final incrementProgressBy(), keeps working on a hidden bar.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29)
+public class RenderGateTest {
+
+    private Activity mActivity;
+    private FrameLayout mContainer;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.buildActivity(Activity.class).setup().get();
+        mContainer = new FrameLayout(mActivity);
+        mActivity.setContentView(mContainer);
+        // Robolectric never tells the window that the app is visible, so
+        // every view would report a hidden window
+        ReflectionHelpers.callInstanceMethod(
+                mActivity.getWindow().getDecorView().getParent(),
+                "dispatchAppVisibility", ClassParameter.from(boolean.class, true));
+        frame();
+    }
+
+    @Test
+    public void hidden_incrementsAccumulate() {
+        for (ProgressBar bar : attachedBars()) {
+            bar.setProgress(10);
+            assertEquals(0, suppressed(bar));
+
+            bar.setVisibility(View.GONE);
+            bar.incrementProgressBy(5);
+            bar.incrementProgressBy(5);
+            bar.incrementProgressBy(5);
+            assertEquals(25, bar.getProgress());
+            assertEquals(3, suppressed(bar));
+
+            bar.setVisibility(View.VISIBLE);
+            assertEquals(25, bar.getProgress());
+
+            bar.incrementProgressBy(5);
+            assertEquals(30, bar.getProgress());
+            assertEquals(3, suppressed(bar));
+        }
+    }
+
+    @Test
+    public void hiddenParent_suppressesRedraws() {
+        for (ProgressBar bar : attachedBars()) {
+            mContainer.setVisibility(View.INVISIBLE);
+            bar.setProgress(40);
+            assertEquals(1, suppressed(bar));
+
+            mContainer.setVisibility(View.VISIBLE);
+            bar.setProgress(50);
+            assertEquals(1, suppressed(bar));
+            assertEquals(50, bar.getProgress());
+        }
+    }
+
+    @Test
+    public void hidden_animatedSetProgressIsNotOverwritten() {
+        for (ProgressBar bar : attachedBars()) {
+            bar.setVisibility(View.GONE);
+            bar.setProgress(30);
+            bar.setProgress(50, false);
+            assertEquals(50, bar.getProgress());
+            assertEquals(2, suppressed(bar));
+
+            bar.setVisibility(View.VISIBLE);
+            assertEquals(50, bar.getProgress());
+        }
+    }
+
+    @Test
+    public void detached_appliesProgressAndKeepsItOnAttach() {
+        for (ProgressBar bar : newBars()) {
+            bar.setProgress(40);
+            bar.incrementProgressBy(2);
+            assertEquals(42, bar.getProgress());
+            assertEquals(2, suppressed(bar));
+
+            mContainer.removeAllViews();
+            mContainer.addView(bar);
+            assertEquals(42, bar.getProgress());
+        }
+    }
+
+    @Test
+    public void hidden_progressIsClampedToNewMax() {
+        for (ProgressBar bar : attachedBars()) {
+            bar.setProgress(80);
+            bar.setVisibility(View.GONE);
+            bar.setProgress(90);
+            bar.setMax(50);
+
+            bar.setVisibility(View.VISIBLE);
+            assertEquals(50, bar.getProgress());
+        }
+    }
+
+    @Test
+    public void hidden_clearTimeSourceIsApplied() {
+        for (ProgressBar bar : attachedBars()) {
+            if (bar instanceof SaundRingProgressBar) {
+                continue;
+            }
+            setTimeSource(bar, 30, 0, SystemClock.uptimeMillis());
+            frame();
+            final int suppressed = suppressed(bar);
+
+            bar.setVisibility(View.GONE);
+            setTimeSource(bar, 60, 0, SystemClock.uptimeMillis());
+            clearTimeSource(bar);
+            assertEquals(60, bar.getProgress());
+            assertEquals(suppressed + 1, suppressed(bar));
+
+            bar.incrementProgressBy(5);
+            assertEquals(65, bar.getProgress());
+        }
+    }
+
+    private static void setTimeSource(ProgressBar bar, long position, float rate,
+                                      long timestamp) {
+        if (bar instanceof SaundProgressBar) {
+            ((SaundProgressBar) bar).setTimeSource(position, rate, timestamp);
+        } else {
+            ((SaundSeekBar) bar).setTimeSource(position, rate, timestamp);
+        }
+    }
+
+    private static void clearTimeSource(ProgressBar bar) {
+        if (bar instanceof SaundProgressBar) {
+            ((SaundProgressBar) bar).clearTimeSource();
+        } else {
+            ((SaundSeekBar) bar).clearTimeSource();
+        }
+    }
+
+    private ProgressBar[] newBars() {
+        return new ProgressBar[]{
+                new SaundProgressBar(mActivity, null, android.R.attr.progressBarStyleHorizontal),
+                new SaundSeekBar(mActivity, null, android.R.attr.seekBarStyle),
+                new SaundRingProgressBar(mActivity)
+        };
+    }
+
+    private ProgressBar[] attachedBars() {
+        ProgressBar[] bars = newBars();
+        mContainer.removeAllViews();
+        for (ProgressBar bar : bars) {
+            bar.setMax(100);
+            mContainer.addView(bar);
+        }
+        frame();
+        return bars;
+    }
+
+    private static void frame() {
+        // the window only reports itself visible from its first traversal
+        ShadowLooper.idleMainLooper(100, TimeUnit.MILLISECONDS);
+    }
+
+    private static int suppressed(ProgressBar bar) {
+        if (bar instanceof SaundProgressBar) {
+            return ((SaundProgressBar) bar).getSuppressedUpdateCount();
+        }
+        if (bar instanceof SaundSeekBar) {
+            return ((SaundSeekBar) bar).getSuppressedUpdateCount();
+        }
+        return ((SaundRingProgressBar) bar).getSuppressedUpdateCount();
+    }
+}
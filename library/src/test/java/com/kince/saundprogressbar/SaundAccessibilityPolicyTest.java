@@ -0,0 +1,60 @@
+package com.kince.saundprogressbar;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks which changes of the progress a SaundAccessibilityPolicy considers
+ * worth an accessibility event.
+ */
+public class SaundAccessibilityPolicyTest {
+
+    @Test
+    public void firstChangeIsAlwaysReported() {
+        SaundAccessibilityPolicy policy = new SaundAccessibilityPolicy(0, 10, 25);
+        assertTrue(policy.isWorthReporting(-1, 0));
+    }
+
+    @Test
+    public void minPercentDelta() {
+        SaundAccessibilityPolicy policy = new SaundAccessibilityPolicy(0, 5, 0);
+
+        assertFalse(policy.isWorthReporting(10, 10));
+        assertFalse(policy.isWorthReporting(10, 14));
+        assertTrue(policy.isWorthReporting(10, 15));
+        // in both directions
+        assertFalse(policy.isWorthReporting(10, 6));
+        assertTrue(policy.isWorthReporting(10, 5));
+    }
+
+    @Test
+    public void milestonesIgnoreMinPercentDelta() {
+        SaundAccessibilityPolicy policy = new SaundAccessibilityPolicy(0, 50, 25);
+
+        assertFalse(policy.isWorthReporting(0, 24));
+        assertTrue(policy.isWorthReporting(24, 25));
+        assertFalse(policy.isWorthReporting(25, 49));
+        assertTrue(policy.isWorthReporting(49, 80));
+        assertTrue(policy.isWorthReporting(30, 10));
+    }
+
+    @Test
+    public void milestonesAlwaysReportCompletion() {
+        SaundAccessibilityPolicy policy = new SaundAccessibilityPolicy(0, 1, 30);
+
+        // 99 and 100 are both past the last multiple of 30
+        assertTrue(policy.isWorthReporting(99, 100));
+        assertFalse(policy.isWorthReporting(100, 100));
+    }
+
+    @Test
+    public void argumentsAreClamped() {
+        SaundAccessibilityPolicy policy = new SaundAccessibilityPolicy(-5, 0, -1);
+
+        assertEquals(0, policy.getMinInterval());
+        assertEquals(1, policy.getMinPercentDelta());
+        assertEquals(0, policy.getMilestone());
+        assertTrue(policy.isWorthReporting(10, 11));
+    }
+}
@@ -0,0 +1,145 @@
+package com.kince.saundprogressbar;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.ProgressBar;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the pool only builds widgets on the main thread, also when it
+ * is prewarmed through an executor, and that clearing it drops the widgets
+ * that are still due.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29)
+public class SaundProgressBarPoolTest {
+
+    private RecordingFactory mFactory;
+    private SaundProgressBarPool<ProgressBar> mPool;
+
+    @Before
+    public void setUp() {
+        mFactory = new RecordingFactory();
+        mPool = new SaundProgressBarPool<>(RuntimeEnvironment.getApplication(),
+                mFactory, 4);
+    }
+
+    @Test
+    public void prewarm_buildsWhileIdle() {
+        mPool.prewarm(10);
+        assertEquals(0, mPool.size());
+
+        idle();
+        assertEquals(4, mPool.size());
+    }
+
+    @Test
+    public void prewarm_preloadsOnExecutorAndBuildsOnMainThread() throws Exception {
+        final List<Runnable> tasks = new ArrayList<>();
+        mPool.prewarm(3, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        });
+        assertEquals(1, tasks.size());
+
+        Thread worker = new Thread(tasks.get(0));
+        worker.start();
+        worker.join();
+        assertEquals(worker, mFactory.mPreloadThread);
+        assertEquals(0, mFactory.mCreated);
+
+        idle();
+        assertEquals(3, mPool.size());
+        assertEquals(Looper.getMainLooper().getThread(), mFactory.mCreateThread);
+    }
+
+    @Test
+    public void forProgressBars_preloadsTheStyleOffTheMainThread() throws Exception {
+        final List<Thread> workers = new ArrayList<>();
+        SaundProgressBarPool<SaundProgressBar> pool = SaundProgressBarPool.forProgressBars(
+                RuntimeEnvironment.getApplication(),
+                android.R.attr.progressBarStyleHorizontal, 2);
+        pool.prewarm(2, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                Thread worker = new Thread(command);
+                workers.add(worker);
+                worker.start();
+            }
+        });
+        workers.get(0).join();
+
+        idle();
+        assertEquals(2, pool.size());
+    }
+
+    @Test
+    public void clear_dropsWidgetsThatAreStillDue() {
+        mPool.prewarm(3);
+        mPool.clear();
+
+        idle();
+        assertEquals(0, mPool.size());
+        assertEquals(0, mFactory.mCreated);
+    }
+
+    @Test
+    public void release_keepsPoolBounded() {
+        mPool.prewarm(4);
+        idle();
+        assertFalse(mPool.release(mFactory.create(RuntimeEnvironment.getApplication())));
+
+        ProgressBar view = mPool.acquire();
+        assertEquals(3, mPool.size());
+        assertTrue(mPool.release(view));
+        assertEquals(4, mPool.size());
+    }
+
+    private static void idle() {
+        // Robolectric only runs idle handlers when the looper gets to go idle
+        // after a message, which a real main thread always does eventually
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        ShadowLooper.idleMainLooper();
+    }
+
+    private static final class RecordingFactory implements
+            SaundProgressBarPool.Factory<ProgressBar>, SaundProgressBarPool.Preloader {
+
+        volatile Thread mPreloadThread;
+        Thread mCreateThread;
+        int mCreated;
+
+        @Override
+        public ProgressBar create(Context context) {
+            mCreateThread = Thread.currentThread();
+            mCreated++;
+            return new ProgressBar(context, null,
+                    android.R.attr.progressBarStyleHorizontal);
+        }
+
+        @Override
+        public void preload(Context context) {
+            mPreloadThread = Thread.currentThread();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.kince.saundprogressbar;
+
+import android.widget.ProgressBar;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the open addressed item table of SaundProgressRegistry through its
+ * public API, and that updates reach exactly the views an item is bound to.
+ * The registry flushes on the next frame of the main looper, which Robolectric
+ * only runs when it is idled.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29)
+public class SaundProgressRegistryTest {
+
+    // enough items to resize the initial table several times and to make
+    // probe sequences collide and wrap around
+    private static final int ITEMS = 2000;
+
+    private SaundProgressRegistry mRegistry;
+
+    @Before
+    public void setUp() {
+        mRegistry = new SaundProgressRegistry(4);
+    }
+
+    @Test
+    public void update_insertsAndOverwrites() {
+        mRegistry.update(7, 10, 200);
+        mRegistry.update(-7, 20);
+        mRegistry.update(0, 30);
+
+        assertEquals(3, mRegistry.size());
+        assertEquals(10, mRegistry.getProgress(7));
+        assertEquals(20, mRegistry.getProgress(-7));
+        assertEquals(30, mRegistry.getProgress(0));
+        assertEquals(-1, mRegistry.getProgress(8));
+
+        mRegistry.update(7, 11);
+        assertEquals(3, mRegistry.size());
+        assertEquals(11, mRegistry.getProgress(7));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void update_rejectsEmptyKey() {
+        mRegistry.update(Long.MIN_VALUE, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void update_rejectsNegativeProgress() {
+        // -1 would make a known item look removed
+        mRegistry.update(1, -1, 100);
+    }
+
+    @Test
+    public void update_rejectsNegativeMax() {
+        try {
+            mRegistry.update(1, 0, -1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(0, mRegistry.size());
+    }
+
+    @Test
+    public void update_appliesOncePerFrame() {
+        CountingProgressBar view = new CountingProgressBar();
+        mRegistry.bind(1, view);
+        // ProgressBar sets its own progress while it is built
+        view.mUpdates = 0;
+
+        for (int i = 1; i <= 50; i++) {
+            mRegistry.update(1, i);
+        }
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(50, view.getProgress());
+        assertEquals(1, view.mUpdates);
+    }
+
+    @Test
+    public void update_fromAnotherThreadReachesView() throws Exception {
+        ProgressBar view = newView();
+        mRegistry.bind(1, view);
+
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= 50; i++) {
+                    mRegistry.update(1, i);
+                }
+            }
+        });
+        worker.start();
+        worker.join();
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(50, view.getProgress());
+    }
+
+    @Test
+    public void update_keepsEveryItemAcrossResizes() {
+        for (int i = 0; i < ITEMS; i++) {
+            mRegistry.update(id(i), i % 101);
+        }
+
+        assertEquals(ITEMS, mRegistry.size());
+        for (int i = 0; i < ITEMS; i++) {
+            assertEquals(i % 101, mRegistry.getProgress(id(i)));
+        }
+    }
+
+    @Test
+    public void remove_shiftsProbeSequencesBack() {
+        for (int i = 0; i < ITEMS; i++) {
+            mRegistry.update(id(i), i % 101);
+        }
+
+        // deleting every third item leaves gaps in the middle of most probe
+        // sequences, every other item must still be found behind them
+        int removed = 0;
+        for (int i = 0; i < ITEMS; i += 3) {
+            mRegistry.remove(id(i));
+            removed++;
+        }
+
+        assertEquals(ITEMS - removed, mRegistry.size());
+        for (int i = 0; i < ITEMS; i++) {
+            assertEquals(i % 3 == 0 ? -1 : i % 101, mRegistry.getProgress(id(i)));
+        }
+
+        // and the freed slots can be used again
+        for (int i = 0; i < ITEMS; i += 3) {
+            mRegistry.update(id(i), 1);
+        }
+        assertEquals(ITEMS, mRegistry.size());
+        for (int i = 0; i < ITEMS; i++) {
+            assertEquals(i % 3 == 0 ? 1 : i % 101, mRegistry.getProgress(id(i)));
+        }
+    }
+
+    @Test
+    public void bind_appliesKnownProgressAndForwardsUpdates() {
+        ProgressBar view = newView();
+        mRegistry.update(1, 40, 200);
+
+        mRegistry.bind(1, view);
+        assertEquals(200, view.getMax());
+        assertEquals(40, view.getProgress());
+
+        mRegistry.update(1, 50, 200);
+        mRegistry.update(1, 60, 200);
+        assertEquals(40, view.getProgress());
+
+        ShadowLooper.idleMainLooper();
+        assertEquals(60, view.getProgress());
+    }
+
+    @Test
+    public void bind_keepsBindingsAcrossResizes() {
+        ProgressBar view = newView();
+        mRegistry.bind(id(ITEMS - 1), view);
+
+        for (int i = 0; i < ITEMS; i++) {
+            mRegistry.update(id(i), i % 101);
+        }
+        ShadowLooper.idleMainLooper();
+
+        assertEquals((ITEMS - 1) % 101, view.getProgress());
+    }
+
+    @Test
+    public void remove_whileBoundKeepsViewUntilUnbound() {
+        ProgressBar view = newView();
+        mRegistry.update(1, 30);
+        mRegistry.bind(1, view);
+
+        mRegistry.remove(1);
+        assertEquals(-1, mRegistry.getProgress(1));
+        ShadowLooper.idleMainLooper();
+        assertEquals(30, view.getProgress());
+
+        // the item is only deleted from the table once its view lets go
+        mRegistry.unbind(view);
+        assertEquals(0, mRegistry.size());
+
+        mRegistry.update(1, 70);
+        ShadowLooper.idleMainLooper();
+        assertEquals(30, view.getProgress());
+    }
+
+    @Test
+    public void bind_movesViewToAnotherItem() {
+        ProgressBar view = newView();
+        mRegistry.bind(1, view);
+        mRegistry.bind(2, view);
+
+        mRegistry.update(1, 10);
+        mRegistry.update(2, 20);
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(20, view.getProgress());
+    }
+
+    @Test
+    public void bind_movesItemToAnotherView() {
+        ProgressBar first = newView();
+        ProgressBar second = newView();
+        ProgressBar other = newView();
+        mRegistry.bind(3, other);
+        mRegistry.bind(1, first);
+        mRegistry.bind(1, second);
+
+        // the stale view letting go must not unbind the item's new view
+        mRegistry.unbind(first);
+
+        mRegistry.update(1, 55);
+        mRegistry.update(3, 33);
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(0, first.getProgress());
+        assertEquals(55, second.getProgress());
+        assertEquals(33, other.getProgress());
+    }
+
+    @Test
+    public void bind_removedItemToAnotherView() {
+        ProgressBar first = newView();
+        ProgressBar second = newView();
+        mRegistry.update(1, 30);
+        mRegistry.bind(1, first);
+        mRegistry.remove(1);
+
+        mRegistry.bind(1, second);
+        mRegistry.unbind(first);
+        assertEquals(1, mRegistry.size());
+
+        mRegistry.update(1, 80);
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(30, first.getProgress());
+        assertEquals(80, second.getProgress());
+    }
+
+    private static long id(int i) {
+        // spread the ids over the whole range, including negative ones
+        return (i - ITEMS / 2) * 0x10000000001L;
+    }
+
+    private static final class CountingProgressBar extends ProgressBar {
+
+        int mUpdates;
+
+        CountingProgressBar() {
+            super(RuntimeEnvironment.getApplication(), null,
+                    android.R.attr.progressBarStyleHorizontal);
+        }
+
+        @Override
+        public synchronized void setProgress(int progress) {
+            mUpdates++;
+            super.setProgress(progress);
+        }
+    }
+
+    private static ProgressBar newView() {
+        return new ProgressBar(RuntimeEnvironment.getApplication(), null,
+                android.R.attr.progressBarStyleHorizontal);
+    }
+}
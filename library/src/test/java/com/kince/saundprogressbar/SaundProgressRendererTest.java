@@ -0,0 +1,94 @@
+package com.kince.saundprogressbar;
+
+import android.graphics.Bitmap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that asynchronous renders reach the callback in the order they were
+ * requested, even when the executor runs them out of order.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29)
+public class SaundProgressRendererTest {
+
+    private SaundProgressRenderer mRenderer;
+    private QueueExecutor mExecutor;
+    private List<Bitmap> mDelivered;
+    private SaundProgressRenderer.Callback mCallback;
+
+    @Before
+    public void setUp() {
+        mRenderer = new SaundProgressRenderer(RuntimeEnvironment.getApplication(), 200, 40);
+        mExecutor = new QueueExecutor();
+        mDelivered = new ArrayList<>();
+        mCallback = new SaundProgressRenderer.Callback() {
+            @Override
+            public void onRendered(Bitmap bitmap) {
+                mDelivered.add(bitmap);
+            }
+        };
+    }
+
+    @Test
+    public void renderAsync_deliversInOrder() {
+        mRenderer.renderAsync(10, 100, mExecutor, mCallback);
+        mRenderer.renderAsync(20, 100, mExecutor, mCallback);
+        mExecutor.run(0);
+        mExecutor.run(0);
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(2, mDelivered.size());
+        assertSame(mRenderer.render(20, 100), mDelivered.get(1));
+    }
+
+    @Test
+    public void renderAsync_dropsOlderRenderThatRunsLate() {
+        mRenderer.renderAsync(10, 100, mExecutor, mCallback);
+        mRenderer.renderAsync(20, 100, mExecutor, mCallback);
+        mExecutor.run(1);
+        mExecutor.run(0);
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(1, mDelivered.size());
+        // and the late render didn't replace the newer image either
+        assertSame(mDelivered.get(0), mRenderer.render(20, 100));
+    }
+
+    @Test
+    public void renderAsync_skipsUnchangedImage() {
+        mRenderer.renderAsync(10, 100, mExecutor, mCallback);
+        mRenderer.renderAsync(10, 100, mExecutor, mCallback);
+        mExecutor.run(0);
+        mExecutor.run(0);
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(1, mDelivered.size());
+    }
+
+    private static final class QueueExecutor implements Executor {
+
+        final List<Runnable> mTasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+
+        void run(int index) {
+            mTasks.remove(index).run();
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.kince.saundprogressbar;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.ClipDrawable;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
+import android.graphics.drawable.LayerDrawable;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.ProgressBar;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Renders the widgets into bitmaps with Robolectric's native graphics and
+ * compares them against golden images, so changes to onDraw and
+ * updateProgressBar can be checked for visual regressions on a plain JVM.
+ * <p>
+ * The progress drawables and the indicator are built in code rather than taken
+ * from the library's nine-patches, so the images don't depend on how the
+ * build tools compile those. Native graphics needs SDK 29 or newer.
+ * <p>
+ * Run with -Dsaund.recordGoldens=true to (re)write the golden images after an
+ * intended visual change. The benchmark only reports ns/frame, it never fails.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+@Config(sdk = 29)
+public class SaundRenderTest {
+
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 80;
+    // enough for the indicator to stay on the canvas at either end
+    private static final int PADDING = 32;
+    private static final int[] PROGRESS = {0, 33, 100};
+    // the label is only drawn in the indicator, so a formatter without an
+    // indicator can't change the image
+    private static final boolean[][] INDICATOR_FORMATTER = {
+            {false, false}, {true, false}, {true, true}};
+
+    // pixels may differ this much per channel (text anti-aliasing) and this
+    // fraction of pixels may differ at all before an image counts as changed
+    private static final int CHANNEL_TOLERANCE = 8;
+    private static final float PIXEL_TOLERANCE = 0.002f;
+
+    private static final SaundProgressBar.Formatter STEP_FORMATTER = new SaundSeekBar.Formatter() {
+        @Override
+        public String getText(int progress) {
+            return "step " + progress;
+        }
+    };
+
+    private Activity mActivity;
+    private FrameLayout mContainer;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.buildActivity(Activity.class).setup().get();
+        mContainer = new FrameLayout(mActivity);
+        mActivity.setContentView(mContainer);
+        ShadowLooper.idleMainLooper();
+    }
+
+    @Test
+    public void render_matchesGoldens() throws IOException {
+        final boolean record = Boolean.getBoolean("saund.recordGoldens");
+        final List<String> missing = new ArrayList<>();
+        final List<String> changed = new ArrayList<>();
+
+        for (boolean seekBar : new boolean[]{false, true}) {
+            for (boolean layer : new boolean[]{true, false}) {
+                for (boolean[] label : INDICATOR_FORMATTER) {
+                    ProgressBar view = create(seekBar, layer, label[0], label[1], false);
+                    check(view, (seekBar ? "seekbar" : "progressbar")
+                            + (layer ? "_layer" : "_plain")
+                            + (label[0] ? "_indicator" : "")
+                            + (label[1] ? "_formatter" : ""), record, missing, changed);
+                }
+            }
+        }
+
+        // the tick marks sit between the track and the thumb
+        for (boolean indicator : new boolean[]{false, true}) {
+            ProgressBar view = create(true, true, indicator, false, true);
+            check(view, "seekbar_layer_ticks" + (indicator ? "_indicator" : ""),
+                    record, missing, changed);
+        }
+
+        assertTrue("no golden images for " + missing
+                + ", run with -Dsaund.recordGoldens=true to create them",
+                missing.isEmpty());
+        assertTrue("rendering differs from the golden images: " + changed,
+                changed.isEmpty());
+    }
+
+    private void check(ProgressBar view, String prefix, boolean record,
+                       List<String> missing, List<String> changed) throws IOException {
+        for (int progress : PROGRESS) {
+            final String name = prefix + "_" + progress;
+
+            view.setProgress(progress);
+            Bitmap actual = render(view);
+
+            if (record) {
+                writeGolden(name, actual);
+                continue;
+            }
+
+            Bitmap golden = readGolden(name);
+            if (golden == null) {
+                missing.add(name);
+            } else if (!similar(golden, actual)) {
+                changed.add(name);
+            }
+        }
+    }
+
+    @Test
+    public void render_isIndependentOfPreviousFrames() {
+        // onDraw mutates the layer bounds in place, drawing a state again
+        // after other states must give exactly the same pixels
+        for (boolean seekBar : new boolean[]{false, true}) {
+            for (boolean layer : new boolean[]{true, false}) {
+                ProgressBar view = create(seekBar, layer, true, false, seekBar);
+
+                view.setProgress(40);
+                Bitmap first = render(view);
+                view.setProgress(90);
+                render(view);
+                view.setProgress(5);
+                render(view);
+                view.setProgress(40);
+                Bitmap again = render(view);
+
+                assertTrue(first.sameAs(again));
+            }
+        }
+    }
+
+    @Test
+    public void render_differsWithProgress() {
+        ProgressBar view = create(false, true, true, false, false);
+
+        view.setProgress(20);
+        Bitmap low = render(view);
+        view.setProgress(80);
+        Bitmap high = render(view);
+
+        assertFalse(low.sameAs(high));
+    }
+
+    @Test
+    public void benchmark_nsPerFrame() {
+        final int warmup = 500;
+        final int frames = 5000;
+        final Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+
+        for (boolean seekBar : new boolean[]{false, true}) {
+            for (boolean indicator : new boolean[]{false, true}) {
+                ProgressBar view = create(seekBar, true, indicator, false, false);
+
+                for (int i = 0; i < warmup; i++) {
+                    view.setProgress(i % 101);
+                    view.draw(canvas);
+                }
+
+                final long start = System.nanoTime();
+                for (int i = 0; i < frames; i++) {
+                    view.setProgress(i % 101);
+                    view.draw(canvas);
+                }
+                final long elapsed = System.nanoTime() - start;
+
+                System.out.println("SaundRenderTest: "
+                        + (seekBar ? "SaundSeekBar" : "SaundProgressBar")
+                        + (indicator ? " with indicator" : "") + ": "
+                        + elapsed / frames + " ns/frame over " + frames + " frames");
+            }
+        }
+    }
+
+    private ProgressBar create(boolean seekBar, boolean layer, boolean indicator,
+                               boolean formatter, boolean ticks) {
+        ProgressBar view;
+        if (seekBar) {
+            // the platform style brings the thumb
+            SaundSeekBar bar = new SaundSeekBar(mActivity, null, android.R.attr.seekBarStyle);
+            if (indicator) {
+                bar.setProgressIndicator(indicator());
+            }
+            if (formatter) {
+                bar.setTextFormatter((SaundSeekBar.Formatter) STEP_FORMATTER);
+            }
+            if (ticks) {
+                bar.setStepSize(10);
+                bar.setTickColor(0xffffffff);
+                bar.setShowTicks(true);
+            }
+            view = bar;
+        } else {
+            SaundProgressBar bar = new SaundProgressBar(mActivity);
+            if (indicator) {
+                bar.setProgressIndicator(indicator());
+            }
+            if (formatter) {
+                bar.setTextFormatter(STEP_FORMATTER);
+            }
+            view = bar;
+        }
+
+        view.setProgressDrawable(layer ? layerDrawable() : clipDrawable());
+        view.setPadding(PADDING, 0, PADDING, 0);
+        view.setMax(100);
+
+        mContainer.removeAllViews();
+        mContainer.addView(view);
+        ShadowLooper.idleMainLooper();
+
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+        return view;
+    }
+
+    private static Drawable layerDrawable() {
+        GradientDrawable pattern = shape(0x00000000);
+        pattern.setStroke(2, 0x80ffffff, 6, 4);
+
+        // the same layers as the library's progressbar.xml
+        LayerDrawable layer = new LayerDrawable(new Drawable[]{
+                shape(0xff444444), shape(0xff33b5e5), pattern});
+        layer.setId(0, android.R.id.background);
+        layer.setId(1, R.id.progress);
+        layer.setId(2, R.id.pattern);
+        return layer;
+    }
+
+    private static Drawable clipDrawable() {
+        // a plain progress drawable is driven by its level, like the
+        // platform's own
+        return new ClipDrawable(shape(0xff33b5e5), Gravity.LEFT, ClipDrawable.HORIZONTAL);
+    }
+
+    private static GradientDrawable shape(int color) {
+        GradientDrawable shape = new GradientDrawable();
+        shape.setCornerRadius(6);
+        shape.setColor(color);
+        return shape;
+    }
+
+    private static Drawable indicator() {
+        GradientDrawable indicator = shape(0xffff8800);
+        indicator.setSize(40, 24);
+        indicator.setBounds(0, 0, 40, 24);
+        return indicator;
+    }
+
+    private static Bitmap render(View view) {
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.BLACK);
+        view.draw(new Canvas(bitmap));
+        return bitmap;
+    }
+
+    private static boolean similar(Bitmap expected, Bitmap actual) {
+        if (expected.getWidth() != actual.getWidth()
+                || expected.getHeight() != actual.getHeight()) {
+            return false;
+        }
+
+        int different = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                final int e = expected.getPixel(x, y);
+                final int a = actual.getPixel(x, y);
+                if (Math.abs(Color.alpha(e) - Color.alpha(a)) > CHANNEL_TOLERANCE
+                        || Math.abs(Color.red(e) - Color.red(a)) > CHANNEL_TOLERANCE
+                        || Math.abs(Color.green(e) - Color.green(a)) > CHANNEL_TOLERANCE
+                        || Math.abs(Color.blue(e) - Color.blue(a)) > CHANNEL_TOLERANCE) {
+                    different++;
+                }
+            }
+        }
+        return different <= expected.getWidth() * expected.getHeight() * PIXEL_TOLERANCE;
+    }
+
+    private Bitmap readGolden(String name) throws IOException {
+        InputStream in = getClass().getResourceAsStream("/golden/" + name + ".png");
+        if (in == null) {
+            return null;
+        }
+        try {
+            return BitmapFactory.decodeStream(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeGolden(String name, Bitmap bitmap) throws IOException {
+        File dir = new File(System.getProperty("saund.goldenDir", "src/test/resources/golden"));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("can't create " + dir);
+        }
+
+        FileOutputStream out = new FileOutputStream(new File(dir, name + ".png"));
+        try {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } finally {
+            out.close();
+        }
+    }
+}
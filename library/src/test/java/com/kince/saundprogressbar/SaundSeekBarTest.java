@@ -0,0 +1,148 @@
+package com.kince.saundprogressbar;
+
+import android.os.SystemClock;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import android.widget.SeekBar;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the seek bar snaps values picked by the user to the nearest
+ * step, and that turning snapping off gives the app its own key increment
+ * back.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29)
+public class SaundSeekBarTest {
+
+    // one pixel per progress unit
+    private static final int WIDTH = 1000;
+
+    private SaundSeekBar mBar;
+    private List<Integer> mReported;
+
+    @Before
+    public void setUp() {
+        mBar = new SaundSeekBar(RuntimeEnvironment.getApplication(), null,
+                android.R.attr.seekBarStyle);
+        mBar.setPadding(0, 0, 0, 0);
+        mBar.setMax(WIDTH);
+        mBar.layout(0, 0, WIDTH, 60);
+
+        mReported = new ArrayList<>();
+        mBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                if (fromUser) {
+                    mReported.add(progress);
+                }
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+            }
+        });
+    }
+
+    @Test
+    public void drag_snapsToNearestStep() {
+        mBar.setStepSize(100);
+        mBar.setSnapToSteps(true);
+
+        drag(370);
+        assertEquals(400, mBar.getProgress());
+        drag(330);
+        assertEquals(300, mBar.getProgress());
+
+        // the listener only ever sees steps, and sees them as the user's
+        assertFalse(mReported.isEmpty());
+        for (int progress : mReported) {
+            assertEquals(0, progress % 100);
+        }
+    }
+
+    @Test
+    public void drag_snapsToMaxWhenItIsCloserThanAStep() {
+        mBar.setMax(950);
+        mBar.setStepSize(100);
+        mBar.setSnapToSteps(true);
+
+        // 948, which is 48 from the last full step but only 2 from the max
+        drag(998);
+        assertEquals(950, mBar.getProgress());
+    }
+
+    @Test
+    public void drag_withoutSnappingKeepsValue() {
+        mBar.setStepSize(100);
+
+        drag(370);
+        assertEquals(370, mBar.getProgress());
+    }
+
+    @Test
+    public void keys_moveByStepWhileSnapping() {
+        mBar.setStepSize(100);
+        mBar.setSnapToSteps(true);
+
+        mBar.onKeyDown(KeyEvent.KEYCODE_DPAD_RIGHT,
+                new KeyEvent(KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_DPAD_RIGHT));
+        assertEquals(100, mBar.getProgress());
+    }
+
+    @Test
+    public void setSnapToSteps_restoresAppKeyIncrement() {
+        mBar.setKeyProgressIncrement(7);
+        mBar.setStepSize(100);
+
+        mBar.setSnapToSteps(true);
+        assertEquals(100, mBar.getKeyProgressIncrement());
+        mBar.setSnapToSteps(false);
+        assertEquals(7, mBar.getKeyProgressIncrement());
+    }
+
+    @Test
+    public void setSnapToSteps_keepsIncrementSetWhileSnapping() {
+        mBar.setStepSize(100);
+        mBar.setSnapToSteps(true);
+        mBar.setKeyProgressIncrement(7);
+
+        mBar.setSnapToSteps(false);
+        assertEquals(7, mBar.getKeyProgressIncrement());
+    }
+
+    @Test
+    public void applyStyle_keepsAppKeyIncrement() {
+        mBar.setKeyProgressIncrement(7);
+
+        mBar.setSnapToSteps(false);
+        mBar.applyStyle(SaundStyle.obtain(RuntimeEnvironment.getApplication(), null,
+                android.R.attr.seekBarStyle));
+        assertEquals(7, mBar.getKeyProgressIncrement());
+    }
+
+    private void drag(int x) {
+        final long now = SystemClock.uptimeMillis();
+        MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, x, 30, 0);
+        MotionEvent up = MotionEvent.obtain(now, now, MotionEvent.ACTION_UP, x, 30, 0);
+        mBar.onTouchEvent(down);
+        mBar.onTouchEvent(up);
+        down.recycle();
+        up.recycle();
+    }
+}